@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/** JMH benchmarks of the phases of {@link MCF_ILP_UPC_UPCT_Coop}, in the synthetic topologies of {@link MCFBenchmark}, for all the combinations of
+ * the parameters numNodes, k, numCores, numSlots and ilpType (override with -p name=value,...). The phases are the ones of {@link MCFBenchmark}:
+ * candidate expansion, the two sets of model matrices, the two model assemblies, the stub solver, the lightpath creation and the clash check.
+ * Run with -prof gc for the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MCFPhaseBenchmarks
+{
+	@Param({"20" , "40"})
+	public int numNodes;
+
+	@Param({"5"})
+	public int k;
+
+	@Param({"7" , "12" , "19"})
+	public int numCores;
+
+	@Param({"120" , "320"})
+	public int numSlots;
+
+	@Param({"non-core-continuity-constraint"})
+	public String ilpType;
+
+	NetPlan netPlan;
+	NetworkLayer layer;
+	WDMUtils.TransponderTypesInfo tpInfo;
+	boolean isNotCCC;
+	Map<Demand,List<List<Link>>> cpl;
+	MCFCandidateLightpaths candidates;
+	double [][] feasibleAssignment_ps;
+	MCF_ILP_UPC_UPCT_Coop algorithm;
+	List<DoubleMatrix2D> x_psc;
+	NetPlan designWithLightpaths;
+
+	/** Builds the topology, the candidates and the stub solution, and a copy of the design with its lightpaths, for the clash check */
+	@Setup(Level.Trial)
+	public void setup ()
+	{
+		netPlan = MCFBenchmark.createTopology(numNodes , 1);
+		layer = netPlan.getNetworkLayerDefault();
+		tpInfo = new WDMUtils.TransponderTypesInfo(MCFUtils.getMFCTranspondersXTAwareInfo(numCores));
+		isNotCCC = ilpType.equalsIgnoreCase("non-core-continuity-constraint");
+		WDMUtils.setFibersNumFrequencySlots(netPlan , numSlots , layer);
+		cpl = computeCandidatePathList();
+		candidates = MCFCandidateLightpaths.expand(netPlan , layer , cpl , tpInfo);
+		feasibleAssignment_ps = candidates.getFeasibleInitialSlots(numSlots);
+		algorithm = new MCF_ILP_UPC_UPCT_Coop ();
+		x_psc = stubSolver().getCandidateSlotMatrices(candidates , numCores , numSlots , true);
+		MCF_ILP_UPC_UPCT_Coop.createLightpaths(netPlan , candidates , x_psc , false);
+		designWithLightpaths = netPlan.copy();
+		netPlan.removeAllUnicastRoutingInformation(layer);
+	}
+
+	/** The design without lightpaths, which are removed after each lightpath creation (untimed) */
+	@State(Scope.Thread)
+	public static class EmptyDesign
+	{
+		NetPlan netPlan;
+		NetworkLayer layer;
+
+		@Setup(Level.Trial)
+		public void setup (MCFPhaseBenchmarks phases)
+		{
+			netPlan = phases.netPlan;
+			layer = phases.layer;
+		}
+
+		@TearDown(Level.Invocation)
+		public void removeLightpaths ()
+		{
+			netPlan.removeAllUnicastRoutingInformation(layer);
+		}
+	}
+
+	@Benchmark
+	public void candidateExpansion (Blackhole blackhole)
+	{
+		final Map<Demand,List<List<Link>>> cpl = computeCandidatePathList();
+		blackhole.consume(cpl);
+		blackhole.consume(MCFCandidateLightpaths.expand(netPlan , layer , cpl , tpInfo));
+	}
+
+	@Benchmark
+	public void matricesLegacy (Blackhole blackhole)
+	{
+		candidates.setModelMatrices(new ConcurrentHashMap<String,Object> ());
+		blackhole.consume(candidates.getMatrixDemand2Candidate(netPlan.getNumberOfDemands(layer)));
+		blackhole.consume(candidates.getMatrixLink2Candidate(netPlan.getNumberOfLinks(layer)));
+	}
+
+	@Benchmark
+	public void matricesTriplets (Blackhole blackhole)
+	{
+		candidates.setModelMatrices(new ConcurrentHashMap<String,Object> ());
+		blackhole.consume(candidates.getMatrixDemand2CandidateSlot(netPlan.getNumberOfDemands(layer) , numSlots));
+		blackhole.consume(candidates.getMatrixLinkSlot2CandidateSlot(netPlan.getNumberOfLinks(layer) , numSlots));
+	}
+
+	@Benchmark
+	public void modelAssemblyTriplets (Blackhole blackhole)
+	{
+		candidates.setModelMatrices(new ConcurrentHashMap<String,Object> ());
+		blackhole.consume(algorithm.createFormulationFromTriplets(!isNotCCC , isNotCCC? numCores : 1 , netPlan , candidates , feasibleAssignment_ps , numCores , numSlots));
+	}
+
+	@Benchmark
+	public void modelAssemblyLegacy (Blackhole blackhole)
+	{
+		candidates.setModelMatrices(new ConcurrentHashMap<String,Object> ());
+		blackhole.consume(algorithm.createFormulationFromMatrixExpressions(!isNotCCC , isNotCCC? numCores : 1 , netPlan , tpInfo , candidates , feasibleAssignment_ps , numCores , numSlots));
+	}
+
+	@Benchmark
+	public void stubSolver (Blackhole blackhole)
+	{
+		blackhole.consume(stubSolver());
+	}
+
+	@Benchmark
+	public void lightpathCreation (EmptyDesign design , Blackhole blackhole)
+	{
+		MCF_ILP_UPC_UPCT_Coop.createLightpaths(design.netPlan , candidates , x_psc , false);
+		blackhole.consume(design.netPlan.getNumberOfRoutes(design.layer));
+	}
+
+	@Benchmark
+	public void clashCheck ()
+	{
+		MCFUtils.checkResourceAllocationClashingPerCore(designWithLightpaths , numCores , designWithLightpaths.getNetworkLayerDefault());
+	}
+
+	private Map<Demand,List<List<Link>>> computeCandidatePathList ()
+	{
+		return netPlan.computeUnicastCandidatePathList(layer , netPlan.getVectorLinkLengthInKm(layer).toArray() ,
+				"K" , "" + k , "maxLengthInKm" , "" + tpInfo.getMaxOpticalReachKm() , "maxPropDelayInMs" , "-1");
+	}
+
+	/* A first-fit solution in a copy of the design, which stands in for the solver output */
+	private MCFLightpaths stubSolver ()
+	{
+		final NetPlan copy = netPlan.copy();
+		MCF_Heuristic_UPC_UPCT_Coop.allocateDemands(copy , copy.getNetworkLayerDefault() , MCFBenchmark.getCandidatePathListOfCopy(cpl , copy) , tpInfo , numCores , numSlots , "highest-traffic-first" , "first-fit" , 1);
+		return MCFLightpaths.readFromRoutes(copy , copy.getNetworkLayerDefault());
+	}
+}
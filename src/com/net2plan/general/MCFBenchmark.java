@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/** Micro-benchmarks of the phases of {@link MCF_ILP_UPC_UPCT_Coop} on synthetic topologies, for all the combinations of the given number of nodes,
+ * k, number of cores and number of slots per core. Each phase is measured separately, with warm-up iterations, as the mean time per operation and
+ * the bytes allocated per operation by the benchmark thread (and the resulting allocation rate):
+ * <ul>
+ * <li>candidate-expansion: candidate path list, and one candidate per path and transponder type within its reach</li>
+ * <li>matrices-A_dp-A_ep, matrices-A_dq-A_esq: the sparse matrices of the legacy and the triplet assemblies (the At_pp matrices are part of the legacy model assembly)</li>
+ * <li>model-assembly-triplets, model-assembly-legacy: the JOM optimization problem, without solving it</li>
+ * <li>stub-solver: a first-fit solution ({@link MCF_Heuristic_UPC_UPCT_Coop}), which stands in for the solver output, so that no solver is needed</li>
+ * <li>lightpath-creation: the lightpaths of the stub solution, created with WDMUtils.addLightpath as in the algorithm</li>
+ * <li>clash-check: {@link MCFUtils#checkResourceAllocationClashingPerCore} on the design with these lightpaths</li>
+ * </ul>
+ * <p>Usage: {@code MCFBenchmark [name=value ...]}, where the names are numNodes, k, numCores, numSlots (comma-separated values, default: 20,40 ;
+ * 5 ; 7,12,19 ; 120,320), ilpType (formulation of the model assembly, default non-core-continuity-constraint), warmupIterations (default 3),
+ * iterations (default 10), seed (default 1) and output (CSV file with the results, default none).</p>
+ * <p>This is a quick in-process measurement. For numbers comparable across JVMs (forked runs, dead-code elimination guards), use the JMH
+ * benchmarks of the benchmark module ({@code MCFPhaseBenchmarks}).</p>
+ */
+public class MCFBenchmark
+{
+	/** The result of one phase in one configuration */
+	public static class BenchmarkResult
+	{
+		public final String phase;
+		public final int numNodes , k , numCores , numSlots , numCandidates;
+		public double meanTimeInMs;
+		public double minTimeInMs;
+		public double allocatedBytesPerOperation; /* -1 if not supported by the JVM */
+
+		BenchmarkResult (String phase , int numNodes , int k , int numCores , int numSlots , int numCandidates)
+		{
+			this.phase = phase;
+			this.numNodes = numNodes;
+			this.k = k;
+			this.numCores = numCores;
+			this.numSlots = numSlots;
+			this.numCandidates = numCandidates;
+		}
+
+		/** Returns the allocation rate in MB per second of the phase, or -1 if the allocations are not measured */
+		public double getAllocationRateInMBPerSecond ()
+		{
+			return allocatedBytesPerOperation < 0 || meanTimeInMs == 0? -1 : allocatedBytesPerOperation / (1024 * 1024) / (meanTimeInMs / 1000);
+		}
+
+		@Override
+		public String toString ()
+		{
+			return String.format(Locale.US , "%-24s N=%-4d k=%-2d C=%-2d S=%-4d P=%-7d %12.3f ms/op (min %10.3f) %14.0f B/op %10.1f MB/s" , phase , numNodes , k , numCores , numSlots ,
+					numCandidates , meanTimeInMs , minTimeInMs , allocatedBytesPerOperation , getAllocationRateInMBPerSecond());
+		}
+	}
+
+	/* An operation to measure, and the untimed work to do after each execution (e.g. undo its changes) */
+	private static abstract class Operation
+	{
+		abstract void run ();
+		void tearDown () { }
+	}
+
+	public static void main (String [] args) throws IOException
+	{
+		Map<String,String> options = new HashMap<String,String> ();
+		for (String arg : args)
+		{
+			final int pos = arg.indexOf('=');
+			if (pos <= 0) throw new IllegalArgumentException ("Wrong argument (name=value expected): " + arg);
+			options.put(arg.substring(0 , pos).trim() , arg.substring(pos + 1).trim());
+		}
+		final int [] numNodesValues = parseIntegers(get(options , "numNodes" , "20,40"));
+		final int [] kValues = parseIntegers(get(options , "k" , "5"));
+		final int [] numCoresValues = parseIntegers(get(options , "numCores" , "7,12,19"));
+		final int [] numSlotsValues = parseIntegers(get(options , "numSlots" , "120,320"));
+		final boolean isNotCCC = get(options , "ilpType" , "non-core-continuity-constraint").equalsIgnoreCase("non-core-continuity-constraint");
+		final int warmupIterations = Integer.parseInt(get(options , "warmupIterations" , "3"));
+		final int iterations = Integer.parseInt(get(options , "iterations" , "10"));
+		final long seed = Long.parseLong(get(options , "seed" , "1"));
+
+		List<BenchmarkResult> results = new ArrayList<BenchmarkResult> ();
+		for (int N : numNodesValues)
+			for (int k : kValues)
+				for (int C : numCoresValues)
+					for (int S : numSlotsValues)
+						for (BenchmarkResult result : runBenchmarks(createTopology(N , seed) , k , C , S , isNotCCC , warmupIterations , iterations))
+						{
+							System.out.println(result);
+							results.add(result);
+						}
+		if (options.containsKey("output")) writeResults(results , new File (options.get("output")));
+	}
+
+	/** Creates a synthetic topology of N nodes, randomly placed in a 2000 x 2000 km square: a ring, plus chords between random nodes up to a mean
+	 * nodal degree of 3 (all the links are bidirectional, with the Euclidean distance as length), and one demand per node pair, of 10 to 100 Gbps
+	 * (the default instance of {@link MCFInstanceGenerator})
+	 */
+	public static NetPlan createTopology (int N , long seed)
+	{
+		MCFInstanceGenerator.Parameters parameters = new MCFInstanceGenerator.Parameters ();
+		parameters.numNodes = N;
+		parameters.seed = seed;
+		return MCFInstanceGenerator.createInstance(parameters);
+	}
+
+	/** Runs the benchmarks of all the phases in the given design (which is modified), returning the results */
+	public static List<BenchmarkResult> runBenchmarks (final NetPlan netPlan , final int k , final int C , final int S , final boolean isNotCCC , int warmupIterations , int iterations)
+	{
+		final NetworkLayer layer = netPlan.getNetworkLayerDefault();
+		final int N = netPlan.getNumberOfNodes();
+		final int D = netPlan.getNumberOfDemands(layer);
+		final int E = netPlan.getNumberOfLinks(layer);
+		final WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo(MCFUtils.getMFCTranspondersXTAwareInfo(C));
+		WDMUtils.setFibersNumFrequencySlots(netPlan , S , layer);
+		List<BenchmarkResult> results = new ArrayList<BenchmarkResult> ();
+
+		/* Candidate path list and candidates */
+		final Object [] expansion = new Object [2];
+		results.add(measure(new BenchmarkResult ("candidate-expansion" , N , k , C , S , -1) , warmupIterations , iterations , new Operation ()
+		{
+			void run ()
+			{
+				final Map<Demand,List<List<Link>>> cpl = netPlan.computeUnicastCandidatePathList(layer , netPlan.getVectorLinkLengthInKm(layer).toArray() ,
+						"K" , "" + k , "maxLengthInKm" , "" + tpInfo.getMaxOpticalReachKm() , "maxPropDelayInMs" , "-1");
+				expansion [0] = cpl;
+				expansion [1] = MCFCandidateLightpaths.expand(netPlan , layer , cpl , tpInfo);
+			}
+		}));
+		@SuppressWarnings("unchecked")
+		final Map<Demand,List<List<Link>>> cpl = (Map<Demand,List<List<Link>>>) expansion [0];
+		final MCFCandidateLightpaths candidates = (MCFCandidateLightpaths) expansion [1];
+		final int P = candidates.getNumberOfCandidates();
+
+		/* Model matrices, without the memoization of the candidates */
+		results.add(measure(new BenchmarkResult ("matrices-A_dp-A_ep" , N , k , C , S , P) , warmupIterations , iterations , new Operation ()
+		{
+			void run () { candidates.setModelMatrices(new ConcurrentHashMap<String,Object> ()); candidates.getMatrixDemand2Candidate(D); candidates.getMatrixLink2Candidate(E); }
+		}));
+		results.add(measure(new BenchmarkResult ("matrices-A_dq-A_esq" , N , k , C , S , P) , warmupIterations , iterations , new Operation ()
+		{
+			void run () { candidates.setModelMatrices(new ConcurrentHashMap<String,Object> ()); candidates.getMatrixDemand2CandidateSlot(D , S); candidates.getMatrixLinkSlot2CandidateSlot(E , S); }
+		}));
+
+		/* JOM model assembly, in both constraint assemblies */
+		final double [][] feasibleAssignment_ps = candidates.getFeasibleInitialSlots(S);
+		final MCF_ILP_UPC_UPCT_Coop algorithm = new MCF_ILP_UPC_UPCT_Coop ();
+		results.add(measure(new BenchmarkResult ("model-assembly-triplets" , N , k , C , S , P) , warmupIterations , iterations , new Operation ()
+		{
+			void run () { candidates.setModelMatrices(new ConcurrentHashMap<String,Object> ()); algorithm.createFormulationFromTriplets(!isNotCCC , isNotCCC? C : 1 , netPlan , candidates , feasibleAssignment_ps , C , S); }
+		}));
+		results.add(measure(new BenchmarkResult ("model-assembly-legacy" , N , k , C , S , P) , warmupIterations , iterations , new Operation ()
+		{
+			void run () { candidates.setModelMatrices(new ConcurrentHashMap<String,Object> ()); algorithm.createFormulationFromMatrixExpressions(!isNotCCC , isNotCCC? C : 1 , netPlan , tpInfo , candidates , feasibleAssignment_ps , C , S); }
+		}));
+
+		/* Stub solver: a first-fit solution, in a copy of the design, as one matrix x_ps per core */
+		final MCFLightpaths [] solution = new MCFLightpaths [1];
+		results.add(measure(new BenchmarkResult ("stub-solver" , N , k , C , S , P) , warmupIterations , iterations , new Operation ()
+		{
+			void run ()
+			{
+				final NetPlan copy = netPlan.copy();
+				MCF_Heuristic_UPC_UPCT_Coop.allocateDemands(copy , copy.getNetworkLayerDefault() , getCandidatePathListOfCopy(cpl , copy) , tpInfo , C , S , "highest-traffic-first" , "first-fit" , 1);
+				solution [0] = MCFLightpaths.readFromRoutes(copy , copy.getNetworkLayerDefault());
+			}
+		}));
+		final List<DoubleMatrix2D> x_psc = solution [0].getCandidateSlotMatrices(candidates , C , S , true);
+
+		/* Lightpath creation, and clash check of the resulting design */
+		results.add(measure(new BenchmarkResult ("lightpath-creation" , N , k , C , S , P) , warmupIterations , iterations , new Operation ()
+		{
+			void run () { MCF_ILP_UPC_UPCT_Coop.createLightpaths(netPlan , candidates , x_psc , false); }
+			void tearDown () { netPlan.removeAllUnicastRoutingInformation(layer); }
+		}));
+		MCF_ILP_UPC_UPCT_Coop.createLightpaths(netPlan , candidates , x_psc , false);
+		results.add(measure(new BenchmarkResult ("clash-check" , N , k , C , S , P) , warmupIterations , iterations , new Operation ()
+		{
+			void run () { MCFUtils.checkResourceAllocationClashingPerCore(netPlan , C , layer); }
+		}));
+		netPlan.removeAllUnicastRoutingInformation(layer);
+		return results;
+	}
+
+	/* The candidate path list of the copy of a design, with the links and demands of the copy */
+	static Map<Demand,List<List<Link>>> getCandidatePathListOfCopy (Map<Demand,List<List<Link>>> cpl , NetPlan copy)
+	{
+		Map<Demand,List<List<Link>>> res = new HashMap<Demand,List<List<Link>>> ();
+		for (Map.Entry<Demand,List<List<Link>>> entry : cpl.entrySet())
+		{
+			List<List<Link>> paths = new ArrayList<List<Link>> ();
+			for (List<Link> path : entry.getValue())
+			{
+				List<Link> copyPath = new ArrayList<Link> (path.size());
+				for (Link e : path) copyPath.add(copy.getLink(e.getIndex()));
+				paths.add(copyPath);
+			}
+			res.put(copy.getDemand(entry.getKey().getIndex()) , paths);
+		}
+		return res;
+	}
+
+	/* Runs the warm-up and the measured iterations of the operation, and fills the result */
+	private static BenchmarkResult measure (BenchmarkResult result , int warmupIterations , int iterations , Operation operation)
+	{
+		final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		final com.sun.management.ThreadMXBean allocationBean = threadBean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()?
+				(com.sun.management.ThreadMXBean) threadBean : null;
+		final long threadId = Thread.currentThread().getId();
+
+		for (int it = 0 ; it < warmupIterations ; it ++) { operation.run(); operation.tearDown(); }
+		double totalTimeInMs = 0 , minTimeInMs = Double.MAX_VALUE;
+		long totalAllocatedBytes = 0;
+		for (int it = 0 ; it < Math.max(1 , iterations) ; it ++)
+		{
+			final long initAllocatedBytes = allocationBean == null? 0 : allocationBean.getThreadAllocatedBytes(threadId);
+			final long initTime = System.nanoTime();
+			operation.run();
+			final double timeInMs = (System.nanoTime() - initTime) / 1e6;
+			if (allocationBean != null) totalAllocatedBytes += allocationBean.getThreadAllocatedBytes(threadId) - initAllocatedBytes;
+			operation.tearDown();
+			totalTimeInMs += timeInMs;
+			minTimeInMs = Math.min(minTimeInMs , timeInMs);
+		}
+		result.meanTimeInMs = totalTimeInMs / Math.max(1 , iterations);
+		result.minTimeInMs = minTimeInMs;
+		result.allocatedBytesPerOperation = allocationBean == null? -1 : totalAllocatedBytes / (double) Math.max(1 , iterations);
+		return result;
+	}
+
+	/** Writes the results as a CSV file, one line per phase and configuration */
+	public static void writeResults (List<BenchmarkResult> results , File file) throws IOException
+	{
+		FileWriter fw = new FileWriter(file);
+		fw.write("phase,numNodes,k,numCores,numSlots,numCandidates,meanTimeMs,minTimeMs,allocatedBytesPerOp,allocationRateMBPerSecond\r\n");
+		for (BenchmarkResult result : results)
+			fw.write(result.phase + "," + result.numNodes + "," + result.k + "," + result.numCores + "," + result.numSlots + "," + result.numCandidates + "," +
+					result.meanTimeInMs + "," + result.minTimeInMs + "," + result.allocatedBytesPerOperation + "," + result.getAllocationRateInMBPerSecond() + "\r\n");
+		fw.close();
+	}
+
+	private static int [] parseIntegers (String values)
+	{
+		final String [] fields = values.split(",");
+		int [] res = new int [fields.length];
+		for (int cont = 0 ; cont < fields.length ; cont ++) res [cont] = Integer.parseInt(fields [cont].trim());
+		return res;
+	}
+
+	private static String get (Map<String,String> options , String name , String defaultValue)
+	{
+		final String value = options.get(name);
+		return value == null? defaultValue : value;
+	}
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.libraries.WDMUtils;
+import com.net2plan.utils.Triple;
+
+/** Cache of the candidate path list and the candidates of the formulation ({@link MCFCandidateLightpaths}), and of the model matrices computed
+ * from them. The key is a fingerprint of the topology (link end nodes, lengths and propagation speeds), the demand end nodes, k, the maximum
+ * optical reach and propagation delay, and the transponder types. The traffic of the demands is not part of the key, so runs that only change
+ * the traffic factor reuse the cache. The entries are kept in memory (while there is enough heap), and optionally in binary files, one per
+ * fingerprint, next to the given cache file (see {@link #getEntryFile}). The files are written to a temporary file and renamed, so other processes
+ * never read a partial entry. They store link and demand indexes, so they can be used with any copy of the design
+ */
+public class MCFCandidateCache
+{
+	private final static int FILE_MAGIC_NUMBER = 0x4D434643;
+	private final static int FILE_FORMAT_VERSION = 1;
+	private final static Map<String,SoftReference<Entry>> memoryCache = new ConcurrentHashMap<String,SoftReference<Entry>> ();
+
+	/* The candidates as indexes: paths of each demand (sequences of link indexes), and demand, path and transponder type of each candidate */
+	private static class Entry
+	{
+		int [][][] paths_d;
+		int [] demand_p;
+		int [] path_p;
+		int [] type_p;
+		Map<String,Object> modelMatrices = new ConcurrentHashMap<String,Object> ();
+	}
+
+	/** Returns the candidate path list and the candidates of the given design, from the cache if possible
+	 * @param netPlan the design
+	 * @param layer the WDM layer
+	 * @param k maximum number of paths per demand
+	 * @param maxPropagationDelayMs maximum propagation delay of a path (non-positive means no limit)
+	 * @param tpInfo the transponder types
+	 * @param transponderTypesInfo the transponder types, as the string tpInfo was created from
+	 * @param cacheFile the cache file, whose name (plus the beginning of the fingerprint) gives the file of each entry, or null to use only the memory
+	 * @return the candidate path list, the candidates, and where they come from ("memory cache", "file cache" or "computed")
+	 */
+	public static Triple<Map<Demand,List<List<Link>>>,MCFCandidateLightpaths,String> getCandidates (NetPlan netPlan , NetworkLayer layer , int k , double maxPropagationDelayMs ,
+			WDMUtils.TransponderTypesInfo tpInfo , String transponderTypesInfo , File cacheFile)
+	{
+		final String fingerprint = getFingerprint(netPlan , layer , k , maxPropagationDelayMs , tpInfo , transponderTypesInfo);
+
+		String source = "memory cache";
+		final SoftReference<Entry> reference = memoryCache.get(fingerprint);
+		Entry entry = reference == null? null : reference.get();
+		if (entry == null && cacheFile != null)
+		{
+			source = "file cache";
+			entry = readFromFile(getEntryFile(cacheFile , fingerprint) , fingerprint , netPlan.getNumberOfDemands(layer) , netPlan.getNumberOfLinks(layer) , k , tpInfo.getNumTypes());
+		}
+		if (entry == null)
+		{
+			source = "computed";
+			final Map<Demand,List<List<Link>>> cpl = netPlan.computeUnicastCandidatePathList(layer , netPlan.getVectorLinkLengthInKm(layer).toArray(),
+					"K" , "" + k , "maxLengthInKm" , ""+tpInfo.getMaxOpticalReachKm(), "maxPropDelayInMs" , "" + maxPropagationDelayMs);
+			final MCFCandidateLightpaths candidates = MCFCandidateLightpaths.expand(netPlan , layer , cpl , tpInfo);
+			entry = createEntry(netPlan , layer , cpl , candidates);
+			memoryCache.put(fingerprint , new SoftReference<Entry> (entry));
+			if (cacheFile != null) writeToFile(getEntryFile(cacheFile , fingerprint) , fingerprint , entry);
+			return Triple.of(cpl , candidates , source);
+		}
+		memoryCache.put(fingerprint , new SoftReference<Entry> (entry));
+
+		/* Build the paths and candidates with the links and demands of this design */
+		final List<Demand> demands = netPlan.getDemands(layer);
+		Map<Demand,List<List<Link>>> cpl = new HashMap<Demand,List<List<Link>>> ();
+		for (Demand d : demands)
+		{
+			List<List<Link>> paths = new ArrayList<List<Link>> (entry.paths_d [d.getIndex()].length);
+			for (int [] linkIndexes : entry.paths_d [d.getIndex()])
+			{
+				List<Link> path = new ArrayList<Link> (linkIndexes.length);
+				for (int e : linkIndexes) path.add(netPlan.getLink(e , layer));
+				paths.add(path);
+			}
+			cpl.put(d , paths);
+		}
+		MCFCandidateLightpaths candidates = new MCFCandidateLightpaths (layer , entry.demand_p.length);
+		for (int p = 0 ; p < entry.demand_p.length ; p ++)
+		{
+			final Demand d = demands.get(entry.demand_p [p]);
+			candidates.add(d , cpl.get(d).get(entry.path_p [p]) , entry.type_p [p] , tpInfo);
+		}
+		candidates.setModelMatrices(entry.modelMatrices);
+		return Triple.of(cpl , candidates , source);
+	}
+
+	/** Removes all the entries kept in memory */
+	public static void clearMemoryCache ()
+	{
+		memoryCache.clear();
+	}
+
+	/** Returns the file of the entry with the given fingerprint: the cache file name with the first 16 characters of the fingerprint before
+	 * its extension (e.g. net.n2p.mcfcache gives net.n2p.0123456789abcdef.mcfcache), so the entries of different transponder tables or k coexist
+	 */
+	public static File getEntryFile (File cacheFile , String fingerprint)
+	{
+		final String name = cacheFile.getName();
+		final int pos = name.lastIndexOf('.');
+		final String prefix = fingerprint.substring(0 , Math.min(16 , fingerprint.length()));
+		final String entryName = pos <= 0? name + "." + prefix : name.substring(0 , pos) + "." + prefix + name.substring(pos);
+		return cacheFile.getParentFile() == null? new File (entryName) : new File (cacheFile.getParentFile() , entryName);
+	}
+
+	private static Entry createEntry (NetPlan netPlan , NetworkLayer layer , Map<Demand,List<List<Link>>> cpl , MCFCandidateLightpaths candidates)
+	{
+		final List<Demand> demands = netPlan.getDemands(layer);
+		Entry entry = new Entry ();
+		entry.paths_d = new int [demands.size()][][];
+		Map<List<Link>,Integer> pathIndex = new HashMap<List<Link>,Integer> ();
+		for (Demand d : demands)
+		{
+			final List<List<Link>> paths = cpl.get(d);
+			entry.paths_d [d.getIndex()] = new int [paths.size()][];
+			for (int cont = 0 ; cont < paths.size() ; cont ++)
+			{
+				entry.paths_d [d.getIndex()][cont] = new int [paths.get(cont).size()];
+				for (int cont2 = 0 ; cont2 < paths.get(cont).size() ; cont2 ++) entry.paths_d [d.getIndex()][cont][cont2] = paths.get(cont).get(cont2).getIndex();
+				pathIndex.put(paths.get(cont) , cont);
+			}
+		}
+		final int P = candidates.getNumberOfCandidates();
+		entry.demand_p = new int [P]; entry.path_p = new int [P]; entry.type_p = new int [P];
+		for (int p = 0 ; p < P ; p ++)
+		{
+			entry.demand_p [p] = candidates.demand_p.get(p).getIndex();
+			entry.path_p [p] = pathIndex.get(candidates.seqLinks_p.get(p));
+			entry.type_p [p] = candidates.transponderType_p.get(p);
+		}
+		entry.modelMatrices = candidates.getModelMatrices();
+		return entry;
+	}
+
+	private static String getFingerprint (NetPlan netPlan , NetworkLayer layer , int k , double maxPropagationDelayMs , WDMUtils.TransponderTypesInfo tpInfo , String transponderTypesInfo)
+	{
+		StringBuilder st = new StringBuilder ();
+		st.append(FILE_FORMAT_VERSION).append(";").append(k).append(";").append(maxPropagationDelayMs).append(";").append(tpInfo.getMaxOpticalReachKm()).append(";").append(transponderTypesInfo.trim()).append(";");
+		for (Link e : netPlan.getLinks(layer))
+			st.append(e.getOriginNode().getIndex()).append(" ").append(e.getDestinationNode().getIndex()).append(" ").append(e.getLengthInKm()).append(" ").append(e.getPropagationSpeedInKmPerSecond()).append(";");
+		for (Demand d : netPlan.getDemands(layer))
+			st.append(d.getIngressNode().getIndex()).append(" ").append(d.getEgressNode().getIndex()).append(";");
+		try
+		{
+			final byte [] hash = MessageDigest.getInstance("SHA-256").digest(st.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder res = new StringBuilder ();
+			for (byte b : hash) res.append(String.format("%02x" , b));
+			return res.toString();
+		} catch (NoSuchAlgorithmException e) { throw new Net2PlanException ("SHA-256 is not available: " + e.getMessage()); }
+	}
+
+	/* Returns null if the file does not exist, cannot be read, is the cache of another fingerprint, or has a size or an index that does not 
+	 * fit the design (D demands, E links, up to k paths per demand, T transponder types): a corrupted or truncated file is discarded */
+	private static Entry readFromFile (File file , String fingerprint , int D , int E , int k , int T)
+	{
+		if (!file.exists()) return null;
+		try
+		{
+			DataInputStream in = new DataInputStream (new BufferedInputStream (new FileInputStream (file)));
+			try
+			{
+				if (in.readInt() != FILE_MAGIC_NUMBER || in.readInt() != FILE_FORMAT_VERSION || !in.readUTF().equals(fingerprint)) return null;
+				Entry entry = new Entry ();
+				if (in.readInt() != D) return null;
+				entry.paths_d = new int [D][][];
+				for (int d = 0 ; d < D ; d ++)
+				{
+					final int numPaths = in.readInt();
+					if (numPaths < 0 || numPaths > k) return null;
+					entry.paths_d [d] = new int [numPaths][];
+					for (int cont = 0 ; cont < numPaths ; cont ++)
+					{
+						final int numLinks = in.readInt();
+						if (numLinks <= 0 || numLinks > E) return null;
+						entry.paths_d [d][cont] = new int [numLinks];
+						for (int cont2 = 0 ; cont2 < numLinks ; cont2 ++)
+						{
+							final int e = in.readInt();
+							if (e < 0 || e >= E) return null;
+							entry.paths_d [d][cont][cont2] = e;
+						}
+					}
+				}
+				final int P = in.readInt();
+				if (P < 0 || P > (long) D * k * T) return null;
+				entry.demand_p = new int [P]; entry.path_p = new int [P]; entry.type_p = new int [P];
+				for (int p = 0 ; p < P ; p ++)
+				{
+					entry.demand_p [p] = in.readInt(); entry.path_p [p] = in.readInt(); entry.type_p [p] = in.readInt();
+					if (entry.demand_p [p] < 0 || entry.demand_p [p] >= D) return null;
+					if (entry.path_p [p] < 0 || entry.path_p [p] >= entry.paths_d [entry.demand_p [p]].length) return null;
+					if (entry.type_p [p] < 0 || entry.type_p [p] >= T) return null;
+				}
+				return entry;
+			} finally { in.close(); }
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/* Writes the entry to a temporary file in the same directory, and renames it to the entry file (atomically, if the file system allows it).
+	 * If the file already exists, it was written by other execution with the same fingerprint, and it is kept */
+	private static void writeToFile (File file , String fingerprint , Entry entry)
+	{
+		if (file.exists()) return;
+		File tempFile = null;
+		try
+		{
+			tempFile = File.createTempFile(file.getName() , ".tmp" , file.getAbsoluteFile().getParentFile());
+			DataOutputStream out = new DataOutputStream (new BufferedOutputStream (new FileOutputStream (tempFile)));
+			try
+			{
+				out.writeInt(FILE_MAGIC_NUMBER);
+				out.writeInt(FILE_FORMAT_VERSION);
+				out.writeUTF(fingerprint);
+				out.writeInt(entry.paths_d.length);
+				for (int [][] paths : entry.paths_d)
+				{
+					out.writeInt(paths.length);
+					for (int [] path : paths)
+					{
+						out.writeInt(path.length);
+						for (int e : path) out.writeInt(e);
+					}
+				}
+				out.writeInt(entry.demand_p.length);
+				for (int p = 0 ; p < entry.demand_p.length ; p ++) { out.writeInt(entry.demand_p [p]); out.writeInt(entry.path_p [p]); out.writeInt(entry.type_p [p]); }
+			} finally { out.close(); }
+			try { Files.move(tempFile.toPath() , file.toPath() , StandardCopyOption.ATOMIC_MOVE , StandardCopyOption.REPLACE_EXISTING); }
+			catch (AtomicMoveNotSupportedException e) { Files.move(tempFile.toPath() , file.toPath() , StandardCopyOption.REPLACE_EXISTING); }
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		} finally
+		{
+			if (tempFile != null && tempFile.exists()) tempFile.delete();
+		}
+	}
+}
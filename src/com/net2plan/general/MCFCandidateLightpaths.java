@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.matrix.tdouble.DoubleFactory1D;
+import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseDoubleMatrix2D;
+
+/** The candidate lightpaths of the formulations: one per sequence of links and transponder type (index p). The lists are
+ * parallel: the element p of each list is the information of the candidate p
+ */
+public class MCFCandidateLightpaths
+{
+	private final NetworkLayer layer;
+	public final List<Integer> transponderType_p;
+	public final List<Double> cost_p;
+	public final List<Double> lineRate_p;
+	public final List<Integer> numSlots_p;
+	public final List<Demand> demand_p;
+	public final List<List<Link>> seqLinks_p;
+	private Map<String,Object> modelMatrices; /* matrices of the formulation already computed, shared with the copies of the cache */
+	private boolean isModelMatricesShared; /* true if modelMatrices is also used by the cache, so it cannot be cleared */
+
+	public MCFCandidateLightpaths (NetworkLayer layer , int initialCapacity)
+	{
+		this.layer = layer;
+		this.modelMatrices = new ConcurrentHashMap<String,Object> ();
+		this.transponderType_p = new ArrayList<Integer> (initialCapacity);
+		this.cost_p = new ArrayList<Double> (initialCapacity);
+		this.lineRate_p = new ArrayList<Double> (initialCapacity);
+		this.numSlots_p = new ArrayList<Integer> (initialCapacity);
+		this.demand_p = new ArrayList<Demand> (initialCapacity);
+		this.seqLinks_p = new ArrayList<List<Link>>(initialCapacity);
+	}
+
+	/** Creates the candidates of all the transponder types in all the paths of the candidate path list, within the transponder optical reach
+	 * @param netPlan the design
+	 * @param layer the WDM layer
+	 * @param cpl the candidate path list, paths of each demand sorted by increasing length
+	 * @param tpInfo the transponder types
+	 * @return the candidates
+	 */
+	public static MCFCandidateLightpaths expand (NetPlan netPlan , NetworkLayer layer , Map<Demand,List<List<Link>>> cpl , WDMUtils.TransponderTypesInfo tpInfo)
+	{
+		final List<Demand> demands = netPlan.getDemands(layer);
+		final int T = tpInfo.getNumTypes();
+		int maximumNumberOfPaths = 0; for (Demand d : demands) maximumNumberOfPaths += T * cpl.get(d).size();
+		MCFCandidateLightpaths res = new MCFCandidateLightpaths (layer , maximumNumberOfPaths);
+
+		for (Demand d : demands)
+		{
+			boolean atLeastOnePath = false;
+
+			for (int t = 0; t < T; t++)
+			{
+				for (List<Link> path : cpl.get(d))
+				{
+					if ((getLengthInKm(path) > tpInfo.getOpticalReachKm(t))) break;
+					res.add(d , path , t , tpInfo);
+					atLeastOnePath = true;
+				}
+			}
+			if (!atLeastOnePath) throw new Net2PlanException ("There are no possible routes for a demand (" + d + "). The topology may be not connected enough, or the optical reach may be too small");
+		}
+		return res;
+	}
+
+	/** Adds a candidate, with the given sequence of links and transponder type
+	 * @return the index p of the new candidate
+	 */
+	public int add (Demand d , List<Link> path , int t , WDMUtils.TransponderTypesInfo tpInfo)
+	{
+		cost_p.add(tpInfo.getCost(t));
+		transponderType_p.add(t);
+		lineRate_p.add(tpInfo.getLineRateGbps(t));
+		numSlots_p.add(tpInfo.getNumSlots(t));
+		demand_p.add(d);
+		seqLinks_p.add(path);
+		if (!isModelMatricesShared) modelMatrices.clear();
+		else { modelMatrices = new ConcurrentHashMap<String,Object> (); isModelMatricesShared = false; }
+		return transponderType_p.size() - 1;
+	}
+
+	/* The model matrices computed so far. They can be shared with other objects with the same candidates in other copies of the design (MCFCandidateCache) */
+	Map<String,Object> getModelMatrices ()
+	{
+		isModelMatricesShared = true;
+		return modelMatrices;
+	}
+
+	void setModelMatrices (Map<String,Object> modelMatrices)
+	{
+		this.modelMatrices = modelMatrices;
+		this.isModelMatricesShared = true;
+	}
+
+	public NetworkLayer getLayer ()
+	{
+		return layer;
+	}
+
+	public int getNumberOfCandidates ()
+	{
+		return transponderType_p.size();
+	}
+
+	/* The model matrices are computed once, and kept until a new candidate is added */
+
+	/** Returns the D x P matrix, 1 if candidate p is assigned to demand d */
+	public DoubleMatrix2D getMatrixDemand2Candidate (int D)
+	{
+		final String key = "A_dp " + D;
+		DoubleMatrix2D res = (DoubleMatrix2D) modelMatrices.get(key);
+		if (res != null) return res;
+		final int P = getNumberOfCandidates();
+		res = DoubleFactory2D.sparse.make(D,P);
+		for (int p = 0; p < P; p++) res.set(demand_p.get(p).getIndex(), p, 1.0);
+		modelMatrices.put(key , res);
+		return res;
+	}
+
+	/** Returns the E x P matrix, 1 if candidate p traverses link e */
+	public DoubleMatrix2D getMatrixLink2Candidate (int E)
+	{
+		final String key = "A_ep " + E;
+		DoubleMatrix2D res = (DoubleMatrix2D) modelMatrices.get(key);
+		if (res != null) return res;
+		final int P = getNumberOfCandidates();
+		res = DoubleFactory2D.sparse.make(E,P);
+		for (int p = 0; p < P; p++)
+			for (Link e : seqLinks_p.get(p)) res.set (e.getIndex() , p , 1.0);
+		modelMatrices.put(key , res);
+		return res;
+	}
+
+	/** Returns the P x S matrix, 1 if the candidate p can start at slot s (it fits in the S slots of the core) */
+	public double [][] getFeasibleInitialSlots (int S)
+	{
+		final int P = getNumberOfCandidates();
+		double [][] feasibleAssignment_ps = new double [P][S];
+		for (int p = 0; p < P; p++)
+			for (int s = 0; s < S + 1 - numSlots_p.get(p) ; s ++)
+				feasibleAssignment_ps [p][s] = 1;
+		return feasibleAssignment_ps;
+	}
+
+	/** Returns the cost of each candidate and initial slot, as a vector with the element p S + s for candidate p and initial slot s */
+	public DoubleMatrix1D getVectorCandidateSlotCost (int S)
+	{
+		final String key = "c_q " + S;
+		DoubleMatrix1D res = (DoubleMatrix1D) modelMatrices.get(key);
+		if (res != null) return res;
+		final int P = getNumberOfCandidates();
+		res = DoubleFactory1D.dense.make(P*S);
+		for (int p = 0; p < P; p++)
+			for (int s = 0; s < S ; s ++)
+				res.set(p*S + s , cost_p.get(p));
+		modelMatrices.put(key , res);
+		return res;
+	}
+
+	/** Returns the D x (P S) matrix with the line rate of candidate p in the columns p S + s of its demand (only the feasible initial slots s) */
+	public DoubleMatrix2D getMatrixDemand2CandidateSlot (int D , int S)
+	{
+		final String key = "A_dq " + D + " " + S;
+		DoubleMatrix2D res = (DoubleMatrix2D) modelMatrices.get(key);
+		if (res != null) return res;
+		final int P = getNumberOfCandidates();
+		int numNonZeros = 0;
+		for (int p = 0; p < P; p++) numNonZeros += Math.max(0 , S + 1 - numSlots_p.get(p));
+		int [] rows = new int [numNonZeros]; int [] columns = new int [numNonZeros]; double [] values = new double [numNonZeros];
+		int cont = 0;
+		for (int p = 0; p < P; p++)
+			for (int s = 0; s < S + 1 - numSlots_p.get(p) ; s ++)
+			{
+				rows [cont] = demand_p.get(p).getIndex(); columns [cont] = p*S + s; values [cont] = lineRate_p.get(p);
+				cont ++;
+			}
+		res = new SparseDoubleMatrix2D (D , P*S , rows , columns , values);
+		modelMatrices.put(key , res);
+		return res;
+	}
+
+	/** Returns the (E S) x (P S) matrix of the slot clashing constraints: 1 in row e S + s2 and column p S + s if the candidate p with initial 
+	 * slot s occupies the slot s2 of the link e. Each row is the left-hand side of the clashing constraint of a link and slot */
+	public DoubleMatrix2D getMatrixLinkSlot2CandidateSlot (int E , int S)
+	{
+		final String key = "A_esq " + E + " " + S;
+		DoubleMatrix2D res = (DoubleMatrix2D) modelMatrices.get(key);
+		if (res != null) return res;
+		final int P = getNumberOfCandidates();
+		int numNonZeros = 0;
+		for (int p = 0; p < P; p++) numNonZeros += seqLinks_p.get(p).size() * Math.max(0 , S + 1 - numSlots_p.get(p)) * numSlots_p.get(p);
+		int [] rows = new int [numNonZeros]; int [] columns = new int [numNonZeros];
+		int cont = 0;
+		for (int p = 0; p < P; p++)
+		{
+			final int numSlots = numSlots_p.get(p);
+			for (Link e : seqLinks_p.get(p))
+				for (int s = 0; s < S + 1 - numSlots ; s ++)
+					for (int s2 = s ; s2 < s + numSlots ; s2 ++)
+					{
+						rows [cont] = e.getIndex()*S + s2; columns [cont] = p*S + s;
+						cont ++;
+					}
+		}
+		res = new SparseDoubleMatrix2D (E*S , P*S , rows , columns , 1.0);
+		modelMatrices.put(key , res);
+		return res;
+	}
+
+	public static double getLengthInKm (Collection<Link> r)
+	{
+		double res = 0;
+		for (Link e : r)
+			res += e.getLengthInKm();
+		return res;
+	}
+}
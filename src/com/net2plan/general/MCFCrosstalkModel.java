@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+
+/** Inter-core crosstalk (XT) model based on the adjacency of the cores of the fiber: hexagonal layout for 7, 19, 37... cores, and ring for the rest.
+ * The mean XT received by a lightpath grows linearly with the length of each link times the number of adjacent cores occupied in its slots.
+ * Then, the reach of each transponder type in the table of {@link MCFUtils#getMFCTranspondersXTAwareInfo}, computed for the worst case (all the
+ * adjacent cores of the core with most of them occupied), gives an XT budget of reach x maximum number of adjacent cores, in km x cores. A lightpath
+ * is feasible while the sum over its links of the length times the adjacent cores occupied is within the budget of its transponder type
+ */
+public class MCFCrosstalkModel
+{
+	private final int C;
+	private final int [][] adjacentCores_c;
+	private final int maxNumAdjacentCores;
+	private final String [][] transponderFields_t; /* line rate, cost, number of slots, reach and regenerator cost of each type */
+	private final double [] reach_t; /* reach in the table, non-positive if there is no limit */
+	private final double [] budget_t;
+
+	/** Creates the model for fibers of C cores and the given transponder types (in the format of {@link com.net2plan.libraries.WDMUtils.TransponderTypesInfo}) */
+	public MCFCrosstalkModel (int C , String transponderTypesInfo)
+	{
+		this.C = C;
+		this.adjacentCores_c = getCoreAdjacency(C);
+		int maxDegree = 0;
+		for (int [] adjacentCores : adjacentCores_c) maxDegree = Math.max(maxDegree , adjacentCores.length);
+		this.maxNumAdjacentCores = maxDegree;
+
+		List<String []> fields = new ArrayList<String []> ();
+		for (String type : transponderTypesInfo.split(";"))
+		{
+			if (type.trim().isEmpty()) continue;
+			final String [] typeFields = type.trim().split("\\s+");
+			if (typeFields.length != 5) throw new Net2PlanException ("Wrong transponder type: " + type);
+			fields.add(typeFields);
+		}
+		this.transponderFields_t = fields.toArray(new String [fields.size()][]);
+		this.reach_t = new double [transponderFields_t.length];
+		this.budget_t = new double [transponderFields_t.length];
+		for (int t = 0 ; t < budget_t.length ; t ++)
+		{
+			reach_t [t] = Double.parseDouble(transponderFields_t [t][3]);
+			budget_t [t] = reach_t [t] <= 0? Double.MAX_VALUE : reach_t [t] * Math.max(1 , maxNumAdjacentCores);
+		}
+	}
+
+	/** Returns the cores adjacent to each core. With C = 1 + 3 R (R + 1) (7, 19, 37...) the cores are in a hexagonal layout of R rings around
+	 * the core 0, numbered from the inner to the outer ring. Otherwise, they are in a ring, each one adjacent to the previous and the next one
+	 */
+	public static int [][] getCoreAdjacency (int C)
+	{
+		int R = 0;
+		while (1 + 3 * (R + 1) * (R + 2) <= C) R ++;
+		final boolean isHexagonal = C > 1 && 1 + 3 * R * (R + 1) == C;
+
+		int [][] res = new int [C][];
+		if (!isHexagonal)
+		{
+			for (int c = 0 ; c < C ; c ++)
+				res [c] = C == 1? new int [0] : C == 2? new int [] { 1 - c } : new int [] { (c + C - 1) % C , (c + 1) % C };
+			return res;
+		}
+
+		/* Axial coordinates of the cores, ring by ring */
+		List<int []> coordinates = new ArrayList<int []> ();
+		for (int ring = 0 ; ring <= R ; ring ++)
+			for (int q = -ring ; q <= ring ; q ++)
+				for (int r = -ring ; r <= ring ; r ++)
+					if (getHexagonalDistance(q , r , 0 , 0) == ring) coordinates.add(new int [] { q , r });
+		for (int c = 0 ; c < C ; c ++)
+		{
+			List<Integer> adjacentCores = new ArrayList<Integer> ();
+			for (int c2 = 0 ; c2 < C ; c2 ++)
+				if (getHexagonalDistance(coordinates.get(c) [0] , coordinates.get(c) [1] , coordinates.get(c2) [0] , coordinates.get(c2) [1]) == 1) adjacentCores.add(c2);
+			res [c] = new int [adjacentCores.size()];
+			for (int cont = 0 ; cont < adjacentCores.size() ; cont ++) res [c][cont] = adjacentCores.get(cont);
+		}
+		return res;
+	}
+
+	private static int getHexagonalDistance (int q1 , int r1 , int q2 , int r2)
+	{
+		return (Math.abs(q1 - q2) + Math.abs(r1 - r2) + Math.abs(q1 + r1 - q2 - r2)) / 2;
+	}
+
+	public int getNumberOfCores () { return C; }
+
+	public int getNumberOfTransponderTypes () { return budget_t.length; }
+
+	/** Returns the cores adjacent to the core c */
+	public int [] getAdjacentCores (int c) { return adjacentCores_c [c]; }
+
+	/** Returns the maximum number of cores adjacent to a core */
+	public int getMaxNumberOfAdjacentCores () { return maxNumAdjacentCores; }
+
+	/** Returns the XT budget of the transponder type t, in km x occupied adjacent cores */
+	public double getCrosstalkBudget (int t) { return budget_t [t]; }
+
+	/** Returns the reach of the transponder type t in the core c when all its adjacent cores are occupied: the budget divided by the number of adjacent cores */
+	public double getWorstCaseReachKm (int t , int c)
+	{
+		return budget_t [t] / Math.max(1 , adjacentCores_c [c].length);
+	}
+
+	/** Returns the maximum reach of the transponder type t, whatever the adjacent cores occupied: the reach in the table times the given factor,
+	 * but not above the budget (the reach with a single adjacent core occupied). The table reach is limited by the XT, so it says nothing about
+	 * the reach limited by other impairments (e.g. ASE noise) with few adjacent cores occupied: the factor is an assumption on that limit
+	 */
+	public double getMaxReachKm (int t , double maxReachFactor)
+	{
+		return reach_t [t] <= 0? Double.MAX_VALUE : Math.min(budget_t [t] , reach_t [t] * maxReachFactor);
+	}
+
+	/** Returns the transponder types with the worst-case reach of the core with fewer adjacent cores, as the reach of each type */
+	public String getTransponderTypesInfoWithBestCoreReach ()
+	{
+		double [] bestCoreReach_t = new double [budget_t.length];
+		for (int t = 0 ; t < budget_t.length ; t ++)
+			for (int c = 0 ; c < C ; c ++) bestCoreReach_t [t] = Math.max(bestCoreReach_t [t] , getWorstCaseReachKm(t , c));
+		return getTransponderTypesInfo(bestCoreReach_t);
+	}
+
+	/** Returns the transponder types with the maximum reach of each type for the given factor (see {@link #getMaxReachKm}), as the reach of each type */
+	public String getTransponderTypesInfoWithMaxReach (double maxReachFactor)
+	{
+		double [] maxReach_t = new double [budget_t.length];
+		for (int t = 0 ; t < budget_t.length ; t ++) maxReach_t [t] = getMaxReachKm(t , maxReachFactor);
+		return getTransponderTypesInfo(maxReach_t);
+	}
+
+	private String getTransponderTypesInfo (double [] newReach_t)
+	{
+		StringBuilder st = new StringBuilder ();
+		for (int t = 0 ; t < transponderFields_t.length ; t ++)
+		{
+			final String [] fields = transponderFields_t [t];
+			final double reach = reach_t [t] <= 0? -1 : Math.floor(newReach_t [t]);
+			st.append(fields [0] + " " + fields [1] + " " + fields [2] + " " + reach + " " + fields [4] + "; ");
+		}
+		return st.toString();
+	}
+}
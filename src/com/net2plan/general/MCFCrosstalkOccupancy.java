@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.net2plan.interfaces.networkDesign.Link;
+
+import cern.colt.list.tdouble.DoubleArrayList;
+
+/** The XT (in km x occupied adjacent cores, see {@link MCFCrosstalkModel}) accumulated by each allocated lightpath, and its budget. For each slot
+ * of each core of each link, the lightpath occupying it is stored, so that the XT added to the adjacent lightpaths by a new one is found
+ * looking only at the slots of its path
+ */
+public class MCFCrosstalkOccupancy
+{
+	private final MCFCrosstalkModel model;
+	private final int C;
+	private final int S;
+	private final int [] lightpath_ecs; /* lightpath occupying the slot s of the core c of link e, in (e C + c) S + s, or -1 */
+	private final DoubleArrayList crosstalk_l = new DoubleArrayList ();
+	private final DoubleArrayList budget_l = new DoubleArrayList ();
+	private double [] extraCrosstalk_l = new double [16]; /* working arrays: XT added to each lightpath by a candidate one, and the lightpaths touched */
+	private int [] touched_l = new int [16];
+
+	/** Creates the occupancy of E links with S slots per core, all of them idle */
+	public MCFCrosstalkOccupancy (MCFCrosstalkModel model , int E , int S)
+	{
+		this.model = model;
+		this.C = model.getNumberOfCores();
+		this.S = S;
+		this.lightpath_ecs = new int [E * C * S];
+		Arrays.fill(lightpath_ecs , -1);
+	}
+
+	public MCFCrosstalkModel getModel () { return model; }
+
+	/** Returns true if a lightpath with a transponder of type t, in the core c and the slots initialSlot to initialSlot + numSlots - 1 of the links,
+	 * would be within its XT budget, and would keep the adjacent lightpaths within theirs. The slots are assumed to be idle
+	 */
+	public boolean isFeasible (List<Link> seqLinks , int c , int initialSlot , int numSlots , int t)
+	{
+		return isFeasible(seqLinks , c , initialSlot , numSlots , model.getCrosstalkBudget(t));
+	}
+
+	/** Registers the lightpath in the occupancy, with a transponder of type t. The slots are assumed to be idle */
+	public void allocate (List<Link> seqLinks , int c , int initialSlot , int numSlots , int t)
+	{
+		allocate(seqLinks , c , initialSlot , numSlots , model.getCrosstalkBudget(t));
+	}
+
+	/** Registers a lightpath that must be kept even if it exceeds the budget (e.g. an existing one), with the given XT budget */
+	public void allocateExisting (List<Link> seqLinks , int c , int initialSlot , int numSlots , double budget)
+	{
+		allocate(seqLinks , c , initialSlot , numSlots , budget);
+	}
+
+	/** Returns the XT accumulated by the lightpath l (in the order they were allocated) */
+	public double getCrosstalk (int l) { return crosstalk_l.get(l); }
+
+	public int getNumberOfLightpaths () { return crosstalk_l.size(); }
+
+	private boolean isFeasible (List<Link> seqLinks , int c , int initialSlot , int numSlots , double budget)
+	{
+		double ownCrosstalk = 0;
+		if (extraCrosstalk_l.length < crosstalk_l.size()) extraCrosstalk_l = Arrays.copyOf(extraCrosstalk_l , 2 * crosstalk_l.size());
+		final double [] extra_l = extraCrosstalk_l;
+		int numTouched = 0;
+		for (Link e : seqLinks)
+		{
+			final double length = e.getLengthInKm();
+			for (int c2 : model.getAdjacentCores(c))
+			{
+				boolean occupied = false;
+				final int offset = (e.getIndex() * C + c2) * S;
+				int previous = -1;
+				for (int s = initialSlot ; s < initialSlot + numSlots ; s ++)
+				{
+					final int l = lightpath_ecs [offset + s];
+					if (l == -1 || l == previous) continue;
+					occupied = true;
+					previous = l;
+					if (extra_l [l] == 0) touched_l = add(touched_l , numTouched ++ , l);
+					extra_l [l] += length; /* a lightpath spans contiguous slots, so it is counted once per link and core */
+				}
+				if (occupied) ownCrosstalk += length;
+			}
+		}
+		boolean feasible = ownCrosstalk <= budget;
+		for (int cont = 0 ; cont < numTouched ; cont ++)
+		{
+			final int l = touched_l [cont];
+			if (crosstalk_l.get(l) + extra_l [l] > budget_l.get(l)) feasible = false;
+			extra_l [l] = 0;
+		}
+		return feasible;
+	}
+
+	private void allocate (List<Link> seqLinks , int c , int initialSlot , int numSlots , double budget)
+	{
+		final int newLightpath = crosstalk_l.size();
+		crosstalk_l.add(0);
+		budget_l.add(budget);
+		double ownCrosstalk = 0;
+		for (Link e : seqLinks)
+		{
+			final double length = e.getLengthInKm();
+			for (int c2 : model.getAdjacentCores(c))
+			{
+				boolean occupied = false;
+				final int offset = (e.getIndex() * C + c2) * S;
+				int previous = -1;
+				for (int s = initialSlot ; s < initialSlot + numSlots ; s ++)
+				{
+					final int l = lightpath_ecs [offset + s];
+					if (l == -1 || l == previous) continue;
+					occupied = true;
+					previous = l;
+					crosstalk_l.set(l , crosstalk_l.get(l) + length);
+				}
+				if (occupied) ownCrosstalk += length;
+			}
+			final int offset = (e.getIndex() * C + c) * S;
+			for (int s = initialSlot ; s < initialSlot + numSlots ; s ++) lightpath_ecs [offset + s] = newLightpath;
+		}
+		crosstalk_l.set(newLightpath , ownCrosstalk);
+	}
+
+	private static int [] add (int [] array , int position , int value)
+	{
+		if (position == array.length) array = Arrays.copyOf(array , 2 * array.length);
+		array [position] = value;
+		return array;
+	}
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.net2plan.interfaces.networkDesign.Link;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+
+/** Master of the decomposition of {@link MCF_ILP_UPC_UPCT_Coop} in partitions (groups of cores, or blocks of the spectrum) solved as independent
+ * sub-ILPs, and a bound of the optimal cost of the whole problem to report the gap of the merged solution
+ */
+public class MCFDecomposition
+{
+	private final static int MAX_TRAFFIC_OF_EXACT_BOUND = 100000; /* above this traffic (in Gbps) of a demand, its bound is the cost per Gbps one */
+
+	/** Assigns each demand to a partition, balancing the spectrum used in each link. The spectrum of a demand is estimated with its candidate that
+	 * uses less slots x links to carry its traffic. The demands are taken from the largest to the smallest estimate, and each one is assigned to the
+	 * partition with the lowest maximum occupation (estimated slots / capacity) in the links of that candidate, after adding it
+	 * @param candidates the candidates
+	 * @param h_d traffic to carry of each demand
+	 * @param E number of links
+	 * @param capacity_k number of slots of each partition in each link (cores x slots)
+	 * @return the partition of each demand, -1 for the demands without traffic or candidates
+	 */
+	public static int [] assignDemandsToPartitions (MCFCandidateLightpaths candidates , DoubleMatrix1D h_d , int E , double [] capacity_k)
+	{
+		final int D = (int) h_d.size();
+		final int K = capacity_k.length;
+		final double [] slots_d = new double [D];
+		final double [] usage_d = new double [D];
+		List<List<Link>> seqLinks_d = new ArrayList<List<Link>> (Collections.<List<Link>>nCopies(D , null));
+		for (int p = 0 ; p < candidates.getNumberOfCandidates() ; p ++)
+		{
+			final int d = candidates.demand_p.get(p).getIndex();
+			if (h_d.get(d) <= 0) continue;
+			final double slots = Math.ceil(h_d.get(d) / candidates.lineRate_p.get(p)) * candidates.numSlots_p.get(p);
+			final double usage = slots * candidates.seqLinks_p.get(p).size();
+			if (seqLinks_d.get(d) != null && usage >= usage_d [d]) continue;
+			slots_d [d] = slots;
+			usage_d [d] = usage;
+			seqLinks_d.set(d , candidates.seqLinks_p.get(p));
+		}
+
+		List<Integer> demands = new ArrayList<Integer> ();
+		for (int d = 0 ; d < D ; d ++) if (seqLinks_d.get(d) != null) demands.add(d);
+		Collections.sort(demands , new Comparator<Integer> ()
+		{
+			public int compare (Integer d1 , Integer d2) { return Double.compare(usage_d [d2] , usage_d [d1]); }
+		});
+
+		int [] partition_d = new int [D];
+		Arrays.fill(partition_d , -1);
+		double [][] load_ke = new double [K][E];
+		for (int d : demands)
+		{
+			int bestPartition = -1;
+			double bestMaxOccupation = Double.MAX_VALUE, bestTotalOccupation = Double.MAX_VALUE;
+			for (int k = 0 ; k < K ; k ++)
+			{
+				if (capacity_k [k] <= 0) continue;
+				double maxOccupation = 0, totalOccupation = 0;
+				for (Link e : seqLinks_d.get(d))
+				{
+					final double occupation = (load_ke [k][e.getIndex()] + slots_d [d]) / capacity_k [k];
+					maxOccupation = Math.max(maxOccupation , occupation);
+					totalOccupation += occupation;
+				}
+				if (maxOccupation < bestMaxOccupation || (maxOccupation == bestMaxOccupation && totalOccupation < bestTotalOccupation))
+				{
+					bestPartition = k;
+					bestMaxOccupation = maxOccupation;
+					bestTotalOccupation = totalOccupation;
+				}
+			}
+			partition_d [d] = bestPartition;
+			for (Link e : seqLinks_d.get(d)) load_ke [bestPartition][e.getIndex()] += slots_d [d];
+		}
+		return partition_d;
+	}
+
+	/** Returns a description of the type of the bound of {@link #getSpectrumFreeLowerBound}, given the number of demands bounded by the cost per Gbps */
+	public static String getSpectrumFreeLowerBoundType (int numPerGbpsDemands)
+	{
+		return numPerGbpsDemands == 0? "exact knapsack" : "knapsack with per-Gbps fallback in " + numPerGbpsDemands + " demands";
+	}
+
+	/** Returns a lower bound of the optimal cost, relaxing the slot clashing constraints: the sum over the demands of the cheapest combination of
+	 * the transponder types of its candidates that carries its traffic (exact for integer line rates, and the cost per Gbps of the cheapest type
+	 * otherwise, or for very large traffics)
+	 * @param candidates the candidates
+	 * @param h_d traffic to carry of each demand
+	 * @param numPerGbpsDemands if not null, its first element is set to the number of demands bounded by the cost per Gbps (0 if the bound is exact)
+	 * @return the bound
+	 */
+	public static double getSpectrumFreeLowerBound (MCFCandidateLightpaths candidates , DoubleMatrix1D h_d , int [] numPerGbpsDemands)
+	{
+		if (numPerGbpsDemands != null) numPerGbpsDemands [0] = 0;
+		final int D = (int) h_d.size();
+		List<List<Integer>> candidates_d = new ArrayList<List<Integer>> (); /* one candidate of each transponder type of the demand */
+		for (int d = 0 ; d < D ; d ++) candidates_d.add(new ArrayList<Integer> ());
+		for (int p = 0 ; p < candidates.getNumberOfCandidates() ; p ++)
+		{
+			final List<Integer> list = candidates_d.get(candidates.demand_p.get(p).getIndex());
+			boolean isNewType = true;
+			for (int p2 : list) if (candidates.transponderType_p.get(p2).equals(candidates.transponderType_p.get(p))) { isNewType = false; break; }
+			if (isNewType) list.add(p);
+		}
+
+		double res = 0;
+		for (int d = 0 ; d < D ; d ++)
+		{
+			final double h = h_d.get(d);
+			if (h <= 0 || candidates_d.get(d).isEmpty()) continue;
+			double minCostPerGbps = Double.MAX_VALUE, minCost = Double.MAX_VALUE;
+			boolean integerRates = true;
+			for (int p : candidates_d.get(d))
+			{
+				minCostPerGbps = Math.min(minCostPerGbps , candidates.cost_p.get(p) / candidates.lineRate_p.get(p));
+				minCost = Math.min(minCost , candidates.cost_p.get(p));
+				if (candidates.lineRate_p.get(p) != Math.floor(candidates.lineRate_p.get(p)) || candidates.lineRate_p.get(p) < 1) integerRates = false;
+			}
+			final int traffic = (int) Math.min(Integer.MAX_VALUE , Math.ceil(h - 1e-9));
+			if (!integerRates || traffic > MAX_TRAFFIC_OF_EXACT_BOUND)
+			{
+				res += Math.max(minCost , h * minCostPerGbps);
+				if (numPerGbpsDemands != null) numPerGbpsDemands [0] ++;
+				continue;
+			}
+
+			/* Unbounded covering knapsack: minimum cost to carry at least x Gbps, for x = 0 ... traffic */
+			double [] minCost_x = new double [traffic + 1];
+			for (int x = 1 ; x <= traffic ; x ++)
+			{
+				minCost_x [x] = Double.MAX_VALUE;
+				for (int p : candidates_d.get(d))
+					minCost_x [x] = Math.min(minCost_x [x] , candidates.cost_p.get(p) + minCost_x [Math.max(0 , x - (int) (double) candidates.lineRate_p.get(p))]);
+			}
+			res += minCost_x [traffic];
+		}
+		return res;
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.libraries.WDMUtils;
+
+/** Generator of reproducible synthetic instances for {@link MCF_ILP_UPC_UPCT_Coop}: N nodes randomly placed in a square, connected by a ring plus
+ * chords between random nodes up to the given mean nodal degree (all the links are bidirectional), and demands between random node pairs. The
+ * demands are generated pair by pair, selecting exactly the requested number of them (sequential sampling), so the traffic matrix is never
+ * built. The traffic of each demand is uniform between the minimum and maximum, times a gravity factor of its end nodes (weights 1 / rank^skew,
+ * in a random order of the nodes, normalized to a mean factor of 1), so a skew of 0 gives uniform traffic. The link lengths are the Euclidean
+ * distance, or follow a uniform or exponential distribution. The same parameters and seed give the same instance.
+ * <p>Usage: {@code MCFInstanceGenerator <output.n2p> [name=value ...]}, with the names of the fields of {@link Parameters}.</p>
+ */
+public class MCFInstanceGenerator
+{
+	/** The parameters of an instance, with their default values */
+	public static class Parameters
+	{
+		public int numNodes = 20;
+		public double meanNodalDegree = 3;
+		public String lengthDistribution = "euclidean"; /* euclidean, uniform or exponential */
+		public double areaSideKm = 2000; /* side of the square where the nodes are placed (Euclidean lengths) */
+		public double minLinkLengthKm = 50; /* uniform lengths */
+		public double maxLinkLengthKm = 1000; /* uniform lengths */
+		public double meanLinkLengthKm = 300; /* exponential lengths */
+		public double demandDensity = 1; /* fraction of the ordered node pairs with a demand, if numDemands is 0 */
+		public long numDemands = 0;
+		public double minTrafficGbps = 10;
+		public double maxTrafficGbps = 100;
+		public double trafficSkew = 0;
+		public int numCores = 7;
+		public int numFrequencySlotsPerCore = 320;
+		public long seed = 1;
+	}
+
+	public static void main (String [] args) throws Exception
+	{
+		if (args.length < 1) throw new IllegalArgumentException ("Usage: MCFInstanceGenerator <output.n2p> [name=value ...]");
+		Map<String,String> options = new HashMap<String,String> ();
+		for (int cont = 1 ; cont < args.length ; cont ++)
+		{
+			final int pos = args [cont].indexOf('=');
+			if (pos <= 0) throw new IllegalArgumentException ("Wrong argument (name=value expected): " + args [cont]);
+			options.put(args [cont].substring(0 , pos).trim() , args [cont].substring(pos + 1).trim());
+		}
+		Parameters parameters = new Parameters ();
+		for (Map.Entry<String,String> option : options.entrySet())
+		{
+			final java.lang.reflect.Field field;
+			try { field = Parameters.class.getField(option.getKey()); } catch (NoSuchFieldException e) { throw new IllegalArgumentException ("Unknown parameter: " + option.getKey()); }
+			if (field.getType() == int.class) field.setInt(parameters , Integer.parseInt(option.getValue()));
+			else if (field.getType() == long.class) field.setLong(parameters , Long.parseLong(option.getValue()));
+			else if (field.getType() == double.class) field.setDouble(parameters , Double.parseDouble(option.getValue()));
+			else field.set(parameters , option.getValue());
+		}
+
+		final long initTime = System.nanoTime();
+		final NetPlan netPlan = createInstance(parameters);
+		netPlan.saveToFile(new File (args [0]));
+		System.out.println(netPlan.getNetworkName() + ": " + netPlan.getNumberOfNodes() + " nodes, " + netPlan.getNumberOfLinks() + " links, " + netPlan.getNumberOfDemands() + " demands, " +
+				netPlan.getDemandTotalOfferedTraffic() + " Gbps, " + ((System.nanoTime() - initTime) / 1e9) + " s");
+	}
+
+	/** Creates the instance with the given parameters. The fibers have the given number of slots per core, and the number of cores and slots are
+	 * also the attributes numCores and numFrequencySlotsPerCore of the design */
+	public static NetPlan createInstance (Parameters parameters)
+	{
+		final int N = parameters.numNodes;
+		if (N < 2) throw new Net2PlanException ("At least two nodes are needed");
+		final Random rng = new Random (parameters.seed);
+		NetPlan netPlan = new NetPlan ();
+		netPlan.setNetworkName("synthetic-N" + N + "-seed" + parameters.seed);
+		netPlan.setAttribute("numCores" , "" + parameters.numCores);
+		netPlan.setAttribute("numFrequencySlotsPerCore" , "" + parameters.numFrequencySlotsPerCore);
+
+		/* Nodes, ring and chords */
+		List<Node> nodes = new ArrayList<Node> (N);
+		double [][] xy_n = new double [N][2];
+		for (int n = 0 ; n < N ; n ++)
+		{
+			xy_n [n][0] = parameters.areaSideKm * rng.nextDouble(); xy_n [n][1] = parameters.areaSideKm * rng.nextDouble();
+			nodes.add(netPlan.addNode(xy_n [n][0] , xy_n [n][1] , "n" + n , null));
+		}
+		Set<Long> connectedPairs = new HashSet<Long> ();
+		for (int n = 0 ; n < (N == 2? 1 : N) ; n ++) addBidirectionalLink(netPlan , nodes , n , (n + 1) % N , xy_n , connectedPairs , parameters , rng);
+		final long maxNumChords = (long) N * (N - 1) / 2 - connectedPairs.size();
+		final long numChords = Math.min(maxNumChords , Math.max(0 , (long) Math.floor(parameters.meanNodalDegree * N / 2) - N));
+		for (long cont = 0 , attempts = 0 ; cont < numChords && attempts < 100L * N + 10 * numChords ; attempts ++)
+		{
+			final int a = rng.nextInt(N) , b = rng.nextInt(N);
+			if (a == b || connectedPairs.contains(getPairKey(a , b , N))) continue;
+			addBidirectionalLink(netPlan , nodes , a , b , xy_n , connectedPairs , parameters , rng);
+			cont ++;
+		}
+
+		/* Gravity weights of the nodes: 1 / rank^skew, in a random order, and the mean product of two weights over the ordered pairs */
+		double [] weight_n = new double [N];
+		if (parameters.trafficSkew == 0) Arrays.fill(weight_n , 1);
+		else
+		{
+			List<Integer> ranks = new ArrayList<Integer> (N);
+			for (int n = 0 ; n < N ; n ++) ranks.add(n);
+			Collections.shuffle(ranks , rng);
+			for (int n = 0 ; n < N ; n ++) weight_n [n] = 1 / Math.pow(ranks.get(n) + 1 , parameters.trafficSkew);
+		}
+		double sumWeights = 0 , sumSquaredWeights = 0;
+		for (double weight : weight_n) { sumWeights += weight; sumSquaredWeights += weight * weight; }
+		final double meanProduct = (sumWeights * sumWeights - sumSquaredWeights) / ((double) N * (N - 1));
+
+		/* Demands: each ordered pair is selected with probability (demands left) / (pairs left), giving exactly numDemands of them */
+		final long numPairs = (long) N * (N - 1);
+		final long numDemands = parameters.numDemands > 0? Math.min(parameters.numDemands , numPairs) : Math.round(Math.min(1 , Math.max(0 , parameters.demandDensity)) * numPairs);
+		long numSelected = 0 , numSeen = 0;
+		for (int a = 0 ; a < N ; a ++)
+			for (int b = 0 ; b < N ; b ++)
+			{
+				if (a == b) continue;
+				final boolean isSelected = numDemands == numPairs || rng.nextDouble() * (numPairs - numSeen) < numDemands - numSelected;
+				numSeen ++;
+				if (!isSelected) continue;
+				numSelected ++;
+				final double traffic = parameters.minTrafficGbps + (parameters.maxTrafficGbps - parameters.minTrafficGbps) * rng.nextDouble();
+				netPlan.addDemand(nodes.get(a) , nodes.get(b) , traffic * weight_n [a] * weight_n [b] / meanProduct , null);
+			}
+
+		WDMUtils.setFibersNumFrequencySlots(netPlan , parameters.numFrequencySlotsPerCore , netPlan.getNetworkLayerDefault());
+		return netPlan;
+	}
+
+	private static void addBidirectionalLink (NetPlan netPlan , List<Node> nodes , int a , int b , double [][] xy_n , Set<Long> connectedPairs , Parameters parameters , Random rng)
+	{
+		final double lengthInKm;
+		if (parameters.lengthDistribution.equalsIgnoreCase("euclidean"))
+			lengthInKm = Math.max(1 , Math.hypot(xy_n [a][0] - xy_n [b][0] , xy_n [a][1] - xy_n [b][1]));
+		else if (parameters.lengthDistribution.equalsIgnoreCase("uniform"))
+			lengthInKm = parameters.minLinkLengthKm + (parameters.maxLinkLengthKm - parameters.minLinkLengthKm) * rng.nextDouble();
+		else if (parameters.lengthDistribution.equalsIgnoreCase("exponential"))
+			lengthInKm = Math.max(1 , -parameters.meanLinkLengthKm * Math.log(1 - rng.nextDouble()));
+		else throw new Net2PlanException ("Unknown link length distribution: " + parameters.lengthDistribution);
+		netPlan.addLink(nodes.get(a) , nodes.get(b) , 0 , lengthInKm , 200000 , null);
+		netPlan.addLink(nodes.get(b) , nodes.get(a) , 0 , lengthInKm , 200000 , null);
+		connectedPairs.add(getPairKey(a , b , nodes.size()));
+	}
+
+	private static long getPairKey (int a , int b , int N)
+	{
+		return (long) Math.min(a , b) * N + Math.max(a , b);
+	}
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.interfaces.networkDesign.Route;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.list.tint.IntArrayList;
+import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/** A list of lightpaths (index l), independent of the routes of a design: demand, sequence of links, initial slot, number of slots, line rate
+ * and fiber core (-1 if not known). The lists are parallel: the element l of each list is the information of the lightpath l
+ */
+public class MCFLightpaths
+{
+	public final List<Demand> demand_l = new ArrayList<Demand> ();
+	public final List<List<Link>> seqLinks_l = new ArrayList<List<Link>> ();
+	public final IntArrayList initialSlot_l = new IntArrayList ();
+	public final IntArrayList numSlots_l = new IntArrayList ();
+	public final List<Double> lineRate_l = new ArrayList<Double> ();
+	public final IntArrayList core_l = new IntArrayList ();
+
+	public void add (Demand d , List<Link> seqLinks , int initialSlot , int numSlots , double lineRate , int core)
+	{
+		demand_l.add(d);
+		seqLinks_l.add(seqLinks);
+		initialSlot_l.add(initialSlot);
+		numSlots_l.add(numSlots);
+		lineRate_l.add(lineRate);
+		core_l.add(core);
+	}
+
+	public int getNumberOfLightpaths ()
+	{
+		return demand_l.size();
+	}
+
+	/** Reads the lightpaths of the routes of the given layer, with the core of their fiberCoreID attribute (-1 if there is none) */
+	public static MCFLightpaths readFromRoutes (NetPlan netPlan , NetworkLayer layer)
+	{
+		MCFLightpaths res = new MCFLightpaths ();
+		for (Route r : netPlan.getRoutes(layer))
+		{
+			if (r.getOccupiedCapacity() == 0) continue;
+			final WDMUtils.RSA rsa = new WDMUtils.RSA (r , false);
+			final String coreAttribute = r.getAttribute("fiberCoreID");
+			int core = -1;
+			if (coreAttribute != null) try { core = Integer.parseInt(coreAttribute.trim()); } catch (NumberFormatException e) { core = -1; }
+			res.add(r.getDemand() , new ArrayList<Link> (rsa.seqLinks) , rsa.getMinimumInitialSlotId() , rsa.getNumSlots() , r.getCarriedTraffic() , core);
+		}
+		return res;
+	}
+
+	/** If any lightpath has no core, assigns the cores of all of them with {@link MCFUtils#assignFiberCores}
+	 * @param isSearchLimitReached if not null, its first element tells if a failure was due to the search limit (and not to the absence of an assignment)
+	 * @return false if the cores could not be assigned
+	 */
+	public boolean assignCoresIfMissing (int C , long maxSearchNodes , boolean [] isSearchLimitReached)
+	{
+		boolean allAssigned = true;
+		for (int l = 0 ; l < getNumberOfLightpaths() ; l ++) if (core_l.get(l) < 0 || core_l.get(l) >= C) allAssigned = false;
+		if (isSearchLimitReached != null) isSearchLimitReached [0] = false;
+		if (allAssigned) return true;
+		initialSlot_l.trimToSize(); numSlots_l.trimToSize();
+		final int [] cores = MCFUtils.assignFiberCores(seqLinks_l , initialSlot_l.elements() , numSlots_l.elements() , C , maxSearchNodes , isSearchLimitReached);
+		if (cores == null) return false;
+		for (int l = 0 ; l < cores.length ; l ++) core_l.set(l , cores [l]);
+		return true;
+	}
+
+	/** Returns the occupancy of the slots of each core of each link by the lightpaths. Throws an exception if a lightpath has no core, or two 
+	 * lightpaths clash */
+	public MCFSpectrumOccupancy getSpectrumOccupancy (int E , int C , int S)
+	{
+		MCFSpectrumOccupancy res = new MCFSpectrumOccupancy (E , C , S);
+		for (int l = 0 ; l < getNumberOfLightpaths() ; l ++)
+		{
+			if (core_l.get(l) < 0 || core_l.get(l) >= C) throw new Net2PlanException ("Lightpath of demand " + demand_l.get(l).getIndex() + " has no valid fiberCoreID attribute");
+			res.allocate(seqLinks_l.get(l) , core_l.get(l) , initialSlot_l.get(l) , numSlots_l.get(l));
+		}
+		return res;
+	}
+
+	/** Returns the number of lightpaths occupying each slot of each link, in the position e S + s, regardless of their cores */
+	public int [] getNumberOfLightpathsPerLinkAndSlot (int E , int S)
+	{
+		int [] res = new int [E * S];
+		for (int l = 0 ; l < getNumberOfLightpaths() ; l ++)
+			for (Link e : seqLinks_l.get(l))
+				for (int s = Math.max(0 , initialSlot_l.get(l)) ; s < Math.min(S , initialSlot_l.get(l) + numSlots_l.get(l)) ; s ++)
+					res [e.getIndex() * S + s] ++;
+		return res;
+	}
+
+	/** Returns the lightpaths as values of the variables of the formulation: one P x S matrix per core, or a single one with the number of
+	 * lightpaths of each candidate p and initial slot s. A lightpath is given to the candidate with the same demand, links, line rate and number
+	 * of slots or, if there is none (e.g. its transponder type was removed as dominated by the presolve), to the cheapest candidate of the same
+	 * demand and links with a higher or equal line rate and fewer or equal slots, which fits in the same initial slot. The lightpaths with
+	 * no such candidate, or out of the S slots or the C cores, are not included
+	 */
+	public List<DoubleMatrix2D> getCandidateSlotMatrices (MCFCandidateLightpaths candidates , int C , int S , boolean oneMatrixPerCore)
+	{
+		return getCandidateSlotMatrices(candidates , C , S , oneMatrixPerCore , null);
+	}
+
+	/** As {@link #getCandidateSlotMatrices(MCFCandidateLightpaths, int, int, boolean)}, and if numReplacedAndDropped is not null, its elements 
+	 * 0 and 1 are set to the number of lightpaths given to a candidate of other transponder type, and not included
+	 */
+	public List<DoubleMatrix2D> getCandidateSlotMatrices (MCFCandidateLightpaths candidates , int C , int S , boolean oneMatrixPerCore , int [] numReplacedAndDropped)
+	{
+		final int P = candidates.getNumberOfCandidates();
+		Map<String,Integer> candidateIndex = new HashMap<String,Integer> ();
+		Map<String,List<Integer>> candidates_path = new HashMap<String,List<Integer>> (); /* candidates of each demand and links */
+		for (int p = P - 1 ; p >= 0 ; p --)
+		{
+			candidateIndex.put(getKey(candidates.demand_p.get(p) , candidates.seqLinks_p.get(p) , candidates.lineRate_p.get(p) , candidates.numSlots_p.get(p)) , p);
+			final String pathKey = getKey(candidates.demand_p.get(p) , candidates.seqLinks_p.get(p) , 0 , 0);
+			List<Integer> list = candidates_path.get(pathKey);
+			if (list == null) { list = new ArrayList<Integer> (); candidates_path.put(pathKey , list); }
+			list.add(p);
+		}
+
+		List<DoubleMatrix2D> x_psc = new ArrayList<DoubleMatrix2D> ();
+		for (int c = 0 ; c < (oneMatrixPerCore? C : 1) ; c ++) x_psc.add(DoubleFactory2D.sparse.make(P,S));
+		int numReplaced = 0, numDropped = 0;
+		for (int l = 0 ; l < getNumberOfLightpaths() ; l ++)
+		{
+			Integer p = candidateIndex.get(getKey(demand_l.get(l) , seqLinks_l.get(l) , lineRate_l.get(l) , numSlots_l.get(l)));
+			if (p == null)
+			{
+				final List<Integer> list = candidates_path.get(getKey(demand_l.get(l) , seqLinks_l.get(l) , 0 , 0));
+				if (list != null)
+					for (int p2 : list)
+						if (candidates.lineRate_p.get(p2) >= lineRate_l.get(l) && candidates.numSlots_p.get(p2) <= numSlots_l.get(l))
+							if (p == null || candidates.cost_p.get(p2) < candidates.cost_p.get(p)) p = p2;
+				if (p != null) numReplaced ++;
+			}
+			final int s = initialSlot_l.get(l);
+			if (p == null || s < 0 || s + candidates.numSlots_p.get(p) > S || (oneMatrixPerCore && (core_l.get(l) < 0 || core_l.get(l) >= C))) { numDropped ++; continue; }
+			final DoubleMatrix2D x_ps = x_psc.get(oneMatrixPerCore? core_l.get(l) : 0);
+			x_ps.set(p , s , x_ps.get(p , s) + 1);
+		}
+		if (numReplacedAndDropped != null) { numReplacedAndDropped [0] = numReplaced; numReplacedAndDropped [1] = numDropped; }
+		return x_psc;
+	}
+
+	private static String getKey (Demand d , List<Link> seqLinks , double lineRate , int numSlots)
+	{
+		StringBuilder key = new StringBuilder ();
+		key.append(d.getIndex()).append(" ").append(lineRate).append(" ").append(numSlots);
+		for (Link e : seqLinks) key.append(" ").append(e.getIndex());
+		return key.toString();
+	}
+}
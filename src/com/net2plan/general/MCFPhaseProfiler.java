@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+
+/** Wall time, bytes allocated and heap used at the boundaries of each phase of an execution of {@link MCF_ILP_UPC_UPCT_Coop}, and the size of its model. A phase
+ * may be executed several times (e.g. the aggregated formulation and the full one), and its measures are accumulated (the heap used is the maximum).
+ * The allocated bytes are the ones of the calling thread, plus the ones of the worker threads added with {@link #addAllocatedBytes} (e.g. the
+ * sub-ILPs of the decomposition), so they are not affected by other executions running in parallel. The heap used is only sampled at the start 
+ * and end of each phase (there is no per-phase peak: a phase may use more heap in between), and the peak heap is taken once, in the report: both are of the whole JVM (the peaks of the memory pools are never reset,
+ * since other executions may be measuring them), so they include other executions. The cost is a few calls to the management beans of the JVM
+ * per phase. The solver time includes its native threads, but not their allocations
+ */
+public class MCFPhaseProfiler
+{
+	public final static String [] PHASES = { "paths" , "initial-solution" , "presolve" , "model-matrices" , "jom-model" , "solver" , "bound" , "rounding" , "write-back" , "clash-check" };
+
+	private final long [] timeInNs_f = new long [PHASES.length];
+	private final long [] allocatedBytes_f = new long [PHASES.length];
+	private final long [] heapAtBoundariesBytes_f = new long [PHASES.length];
+	private final boolean isAllocationMeasured;
+	private int currentPhase = -1;
+	private long initTime;
+	private long initAllocatedBytes;
+
+	private int numCandidates = -1;
+	private long numVariables = -1;
+	private long numConstraints = -1;
+	private double mipGap = Double.NaN;
+	private int numFailedPartitions = -1;
+	private boolean isMonolithicRecovery = false;
+
+	public MCFPhaseProfiler ()
+	{
+		this.isAllocationMeasured = MCFUtils.getCurrentThreadAllocatedBytes() >= 0;
+		Arrays.fill(allocatedBytes_f , isAllocationMeasured? 0 : -1);
+	}
+
+	/** Starts the measure of the given phase (one of {@link #PHASES}). If other phase was being measured, it is stopped */
+	public void start (String phase)
+	{
+		if (currentPhase != -1) stop();
+		currentPhase = Arrays.asList(PHASES).indexOf(phase);
+		if (currentPhase == -1) throw new Net2PlanException ("Unknown phase: " + phase);
+		heapAtBoundariesBytes_f [currentPhase] = Math.max(heapAtBoundariesBytes_f [currentPhase] , MCFUtils.getUsedHeapInBytes());
+		initAllocatedBytes = isAllocationMeasured? MCFUtils.getCurrentThreadAllocatedBytes() : 0;
+		initTime = System.nanoTime();
+	}
+
+	/** Stops the measure of the current phase, if any */
+	public void stop ()
+	{
+		if (currentPhase == -1) return;
+		timeInNs_f [currentPhase] += System.nanoTime() - initTime;
+		if (isAllocationMeasured) allocatedBytes_f [currentPhase] += MCFUtils.getCurrentThreadAllocatedBytes() - initAllocatedBytes;
+		heapAtBoundariesBytes_f [currentPhase] = Math.max(heapAtBoundariesBytes_f [currentPhase] , MCFUtils.getUsedHeapInBytes());
+		currentPhase = -1;
+	}
+
+	/** Adds to the given phase the bytes allocated by other threads working for it (measured by them, e.g. with another profiler) */
+	public void addAllocatedBytes (String phase , long bytes)
+	{
+		final int f = Arrays.asList(PHASES).indexOf(phase);
+		if (f == -1) throw new Net2PlanException ("Unknown phase: " + phase);
+		if (isAllocationMeasured && bytes > 0) allocatedBytes_f [f] += bytes;
+	}
+
+	/** Returns the bytes allocated in all the phases, or -1 if they are not measured */
+	public long getTotalAllocatedBytes ()
+	{
+		if (!isAllocationMeasured) return -1;
+		long res = 0;
+		for (long bytes : allocatedBytes_f) res += bytes;
+		return res;
+	}
+
+	/** Sets the size of the model: number of candidates (P), and of scalar variables and constraints */
+	public void setModelSize (int numCandidates , long numVariables , long numConstraints)
+	{
+		this.numCandidates = numCandidates;
+		this.numVariables = numVariables;
+		this.numConstraints = numConstraints;
+	}
+
+	/** Sets the relative gap of the solution to the best bound known (0 if it is optimal) */
+	public void setMipGap (double mipGap)
+	{
+		this.mipGap = mipGap;
+	}
+
+	/** Sets the number of partitions of the decomposition without a solution, and if the whole problem was then solved without decomposition */
+	public void setDecompositionRecovery (int numFailedPartitions , boolean isMonolithicRecovery)
+	{
+		this.numFailedPartitions = numFailedPartitions;
+		this.isMonolithicRecovery = isMonolithicRecovery;
+	}
+
+	public double getTimeInSeconds (String phase) { return timeInNs_f [Arrays.asList(PHASES).indexOf(phase)] / 1e9; }
+
+	/** Returns the measures, to be appended to the message of the algorithm */
+	public String getReport ()
+	{
+		StringBuilder st = new StringBuilder ();
+		st.append(" - Phases (time, allocated, JVM heap used at phase boundaries) :");
+		for (int f = 0 ; f < PHASES.length ; f ++)
+			st.append(String.format(Locale.US , " %s %.3f s %d MB %d MB;" , PHASES [f] , timeInNs_f [f] / 1e9 , allocatedBytes_f [f] < 0? -1 : allocatedBytes_f [f] / (1024 * 1024) , heapAtBoundariesBytes_f [f] / (1024 * 1024)));
+		st.append(" - JVM peak heap (whole process) : " + (MCFUtils.getPeakHeapUsageInBytes() / (1024 * 1024)) + " MB");
+		st.append(" - P : " + numCandidates + " - Variables : " + numVariables + " - Constraints : " + numConstraints + " - MIP gap : " + mipGap);
+		return st.toString();
+	}
+
+	/** Returns the names of the columns of {@link #getResultsFileColumns}, space-separated */
+	public static String getResultsFileHeader ()
+	{
+		StringBuilder st = new StringBuilder ();
+		for (int f = 0 ; f < PHASES.length ; f ++)
+			st.append((f == 0? "" : " ") + PHASES [f] + "TimeS " + PHASES [f] + "AllocatedB " + PHASES [f] + "HeapAtBoundariesB");
+		st.append(" P variables constraints mipGap jvmPeakHeapB failedPartitions monolithicRecovery");
+		return st.toString();
+	}
+
+	/** Returns the measures as space-separated columns of the results file: time (s), allocated bytes and JVM heap used at the phase boundaries 
+	 * (bytes) of each phase, in the order of {@link #PHASES}, and then P, variables, constraints, MIP gap, the JVM peak heap (bytes, whole process),
+	 * and the failed partitions of the decomposition (-1 without decomposition) and if it was then solved without it (1) or not (0)
+	 */
+	public String getResultsFileColumns ()
+	{
+		StringBuilder st = new StringBuilder ();
+		for (int f = 0 ; f < PHASES.length ; f ++)
+			st.append((f == 0? "" : " ") + (timeInNs_f [f] / 1e9) + " " + allocatedBytes_f [f] + " " + heapAtBoundariesBytes_f [f]);
+		st.append(" " + numCandidates + " " + numVariables + " " + numConstraints + " " + mipGap + " " + MCFUtils.getPeakHeapUsageInBytes() + " " + numFailedPartitions + " " + (isMonolithicRecovery? 1 : 0));
+		return st.toString();
+	}
+}
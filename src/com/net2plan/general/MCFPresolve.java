@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+
+/** Reductions of the formulation of {@link MCF_ILP_UPC_UPCT_Coop} that keep at least one optimal solution: dominated transponder types, demands 
+ * without traffic, and an upper bound of the initial slot of each candidate (not applied with lightpaths fixed in the spectrum)
+ */
+public class MCFPresolve
+{
+	private final MCFCandidateLightpaths candidates;
+	private final int numSlots;
+	private final int [] maxInitialSlot_p;
+	private final boolean [][] feasibleCore_pc;
+	private final int numDominated;
+	private final int numWithoutTraffic;
+	private final int originalNumCandidates;
+	private final int originalNumSlots;
+
+	private MCFPresolve (MCFCandidateLightpaths candidates , int numSlots , int [] maxInitialSlot_p , boolean [][] feasibleCore_pc , int numDominated , int numWithoutTraffic , int originalNumCandidates , int originalNumSlots)
+	{
+		this.candidates = candidates;
+		this.numSlots = numSlots;
+		this.maxInitialSlot_p = maxInitialSlot_p;
+		this.feasibleCore_pc = feasibleCore_pc;
+		this.numDominated = numDominated;
+		this.numWithoutTraffic = numWithoutTraffic;
+		this.originalNumCandidates = originalNumCandidates;
+		this.originalNumSlots = originalNumSlots;
+	}
+
+	/** Applies the presolve to the candidates
+	 * @param candidates the candidates
+	 * @param tpInfo the transponder types the candidates were created with
+	 * @param h_d the traffic to carry of each demand
+	 * @param feasibleCore_pc true if candidate p is feasible in core c (null if all the candidates are feasible in all the cores)
+	 * @param S number of slots per core
+	 * @param boundSpectrum true to compute the spectrum bound (not valid if there are fixed lightpaths)
+	 * @return the result of the presolve
+	 */
+	public static MCFPresolve apply (MCFCandidateLightpaths candidates , WDMUtils.TransponderTypesInfo tpInfo , DoubleMatrix1D h_d , boolean [][] feasibleCore_pc , int S , boolean boundSpectrum)
+	{
+		final int P = candidates.getNumberOfCandidates();
+
+		/* Candidates of each demand and path */
+		Map<Demand,Map<List<Link>,List<Integer>>> candidates_dpath = new LinkedHashMap<Demand,Map<List<Link>,List<Integer>>> ();
+		for (int p = 0 ; p < P ; p ++)
+		{
+			Map<List<Link>,List<Integer>> candidates_path = candidates_dpath.get(candidates.demand_p.get(p));
+			if (candidates_path == null) { candidates_path = new HashMap<List<Link>,List<Integer>> (); candidates_dpath.put(candidates.demand_p.get(p) , candidates_path); }
+			List<Integer> list = candidates_path.get(candidates.seqLinks_p.get(p));
+			if (list == null) { list = new ArrayList<Integer> (); candidates_path.put(candidates.seqLinks_p.get(p) , list); }
+			list.add(p);
+		}
+
+		boolean [] keep_p = new boolean [P];
+		int numWithoutTraffic = 0;
+		int numDominated = 0;
+		for (Map<List<Link>,List<Integer>> candidates_path : candidates_dpath.values())
+			for (List<Integer> list : candidates_path.values())
+				for (int p : list)
+				{
+					if (h_d.get(candidates.demand_p.get(p).getIndex()) <= 0) { numWithoutTraffic ++; continue; }
+					boolean isDominated = false;
+					for (int p2 : list)
+						if (p2 != p && dominates(candidates , feasibleCore_pc , p2 , p)) { isDominated = true; break; }
+					if (isDominated) numDominated ++; else keep_p [p] = true;
+				}
+
+		MCFCandidateLightpaths res = new MCFCandidateLightpaths (candidates.getLayer() , P - numDominated - numWithoutTraffic);
+		List<Integer> originalIndex = new ArrayList<Integer> (P - numDominated - numWithoutTraffic);
+		for (int p = 0 ; p < P ; p ++)
+			if (keep_p [p])
+			{
+				res.add(candidates.demand_p.get(p) , candidates.seqLinks_p.get(p) , candidates.transponderType_p.get(p) , tpInfo);
+				originalIndex.add(p);
+			}
+
+		int [] maxInitialSlot_p = new int [res.getNumberOfCandidates()];
+		int newS = S;
+		if (boundSpectrum && !res.cost_p.contains(0.0)) /* with candidates of zero cost, redundant lightpaths may be optimal */
+		{
+			final long [] startBound_p = getInitialSlotUpperBounds(res , h_d);
+			long maxEndSlot = 0;
+			for (int p = 0 ; p < startBound_p.length ; p ++) maxEndSlot = Math.max(maxEndSlot , startBound_p [p] + res.numSlots_p.get(p));
+			if (maxEndSlot > 0) newS = (int) Math.min(S , maxEndSlot);
+			for (int p = 0 ; p < startBound_p.length ; p ++) maxInitialSlot_p [p] = (int) Math.min(startBound_p [p] , newS - res.numSlots_p.get(p));
+		}
+		else for (int p = 0 ; p < maxInitialSlot_p.length ; p ++) maxInitialSlot_p [p] = S - res.numSlots_p.get(p);
+
+		boolean [][] newFeasibleCore_pc = null;
+		if (feasibleCore_pc != null)
+		{
+			newFeasibleCore_pc = new boolean [originalIndex.size()][];
+			for (int p = 0 ; p < originalIndex.size() ; p ++) newFeasibleCore_pc [p] = feasibleCore_pc [originalIndex.get(p)];
+		}
+		return new MCFPresolve (res , newS , maxInitialSlot_p , newFeasibleCore_pc , numDominated , numWithoutTraffic , P , S);
+	}
+
+	/** Returns the candidates after the presolve */
+	public MCFCandidateLightpaths getCandidates () { return candidates; }
+
+	/** Returns the feasible cores of the candidates after the presolve (null if they were not given) */
+	public boolean [][] getFeasibleCores () { return feasibleCore_pc; }
+
+	/** Returns the number of slots per core of the model (the slots above are never needed) */
+	public int getNumberOfSlots () { return numSlots; }
+
+	/** Returns the P x S matrix, 1 if the candidate p can start at slot s, with the number of slots of the model */
+	public double [][] getFeasibleInitialSlots ()
+	{
+		double [][] feasibleAssignment_ps = candidates.getFeasibleInitialSlots(numSlots);
+		for (int p = 0 ; p < feasibleAssignment_ps.length ; p ++)
+			for (int s = Math.max(0 , maxInitialSlot_p [p] + 1) ; s < numSlots ; s ++) feasibleAssignment_ps [p][s] = 0;
+		return feasibleAssignment_ps;
+	}
+
+	/** Returns the number of variables (candidate, slot and copy) fixed to zero by the per candidate bound on the initial slot, among the ones of the model */
+	public long getNumberOfFixedVariables (int numCopies)
+	{
+		long res = 0;
+		for (int p = 0 ; p < maxInitialSlot_p.length ; p ++)
+		{
+			final int lastFittingSlot = numSlots - candidates.numSlots_p.get(p);
+			if (lastFittingSlot >= 0) res += lastFittingSlot - Math.max(-1 , maxInitialSlot_p [p]);
+		}
+		return res * numCopies;
+	}
+
+	/** Returns a description of the reductions, with the removed variables and constraints of a model with the given number of copies of the variables (one per core, or one), D demands and E links */
+	public String getReport (int numCopies , int D , int E)
+	{
+		final long removedVariables = ((long) originalNumCandidates * originalNumSlots - (long) candidates.getNumberOfCandidates() * numSlots) * numCopies;
+		final long removedConstraints = (long) E * (originalNumSlots - numSlots) * numCopies;
+		return " - Presolve : " + numDominated + " dominated candidates, " + numWithoutTraffic + " candidates of demands without traffic, " + originalNumSlots + " -> " + numSlots + " slots; "
+				+ removedVariables + " variables and " + removedConstraints + " constraints removed, " + getNumberOfFixedVariables(numCopies) + " variables fixed to zero";
+	}
+
+	/* True if the candidate p1 dominates p2, in the same path: higher or equal line rate, lower or equal cost and slots, feasible in the cores of p2, and
+	 * strictly better in something (or equal, and a lower index) */
+	private static boolean dominates (MCFCandidateLightpaths candidates , boolean [][] feasibleCore_pc , int p1 , int p2)
+	{
+		final double rate1 = candidates.lineRate_p.get(p1), rate2 = candidates.lineRate_p.get(p2);
+		final double cost1 = candidates.cost_p.get(p1), cost2 = candidates.cost_p.get(p2);
+		final int slots1 = candidates.numSlots_p.get(p1), slots2 = candidates.numSlots_p.get(p2);
+		if (rate1 < rate2 || cost1 > cost2 || slots1 > slots2) return false;
+		if (feasibleCore_pc != null)
+			for (int c = 0 ; c < feasibleCore_pc [p2].length ; c ++)
+				if (feasibleCore_pc [p2][c] && !feasibleCore_pc [p1][c]) return false;
+		final boolean isEqual = rate1 == rate2 && cost1 == cost2 && slots1 == slots2 && (feasibleCore_pc == null || Arrays.equals(feasibleCore_pc [p1] , feasibleCore_pc [p2]));
+		return !isEqual || p1 < p2;
+	}
+
+	/* Upper bound of the initial slot of each candidate in some optimal solution: the sum, over its links e, of n_d (w_d + w_p - 1) for the demands d
+	 * with a candidate through e, being w_d the maximum number of slots of their candidates. A demand sharing several links is counted once per link.
+	 * With positive costs, an optimal solution has at most n_d < (h_d + maxRate_d) / minRate_d lightpaths of demand d, and placing them one by one 
+	 * in the first free slots of their core and path, a lightpath of w slots starts at most at the sum of (w' + w - 1) over the ones sharing a link */
+	private static long [] getInitialSlotUpperBounds (MCFCandidateLightpaths candidates , DoubleMatrix1D h_d)
+	{
+		final int P = candidates.getNumberOfCandidates();
+		final int D = (int) h_d.size();
+		double [] minRate_d = new double [D], maxRate_d = new double [D];
+		int [] maxSlots_d = new int [D];
+		Arrays.fill(minRate_d , Double.MAX_VALUE);
+		for (int p = 0 ; p < P ; p ++)
+		{
+			final int d = candidates.demand_p.get(p).getIndex();
+			minRate_d [d] = Math.min(minRate_d [d] , candidates.lineRate_p.get(p));
+			maxRate_d [d] = Math.max(maxRate_d [d] , candidates.lineRate_p.get(p));
+			maxSlots_d [d] = Math.max(maxSlots_d [d] , candidates.numSlots_p.get(p));
+		}
+		long [] maxLightpaths_d = new long [D];
+		for (int d = 0 ; d < D ; d ++)
+			if (maxSlots_d [d] > 0 && h_d.get(d) > 0) maxLightpaths_d [d] = (long) Math.ceil((h_d.get(d) + maxRate_d [d]) / minRate_d [d]) - 1;
+
+		/* Per link: sum of n_d (w_d - 1), and of n_d, over the demands with a candidate through it */
+		Map<Link,long []> sums_e = new HashMap<Link,long []> ();
+		Map<Link,Integer> lastDemand_e = new HashMap<Link,Integer> ();
+		for (int p = 0 ; p < P ; p ++)
+		{
+			final int d = candidates.demand_p.get(p).getIndex();
+			for (Link e : candidates.seqLinks_p.get(p))
+			{
+				final Integer lastDemand = lastDemand_e.put(e , d);
+				if (lastDemand != null && lastDemand == d) continue; /* the candidates of a demand are consecutive (if not, it is counted again, still a bound) */
+				long [] sums = sums_e.get(e);
+				if (sums == null) { sums = new long [2]; sums_e.put(e , sums); }
+				sums [0] += maxLightpaths_d [d] * (maxSlots_d [d] - 1);
+				sums [1] += maxLightpaths_d [d];
+			}
+		}
+		long [] res = new long [P];
+		for (int p = 0 ; p < P ; p ++)
+			for (Link e : candidates.seqLinks_p.get(p))
+			{
+				final long [] sums = sums_e.get(e);
+				res [p] += sums [0] + sums [1] * candidates.numSlots_p.get(p);
+			}
+		return res;
+	}
+}
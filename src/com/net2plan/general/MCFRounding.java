@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+
+import cern.colt.list.tdouble.DoubleArrayList;
+import cern.colt.list.tint.IntArrayList;
+import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/** Randomized rounding of the solution of the LP relaxation of the formulation of {@link MCF_ILP_UPC_UPCT_Coop}. Each pass rounds every fractional
+ * variable up with a probability equal to its fractional part, and places the lightpaths in a random order weighted by their values, skipping
+ * the ones that clash with the ones already placed. Then, the traffic not carried is repaired first-fit (with the candidates of the demand from the
+ * highest to the lowest LP value, and then from the lowest cost per carried Gbps), and the redundant lightpaths are removed, from the most expensive.
+ * The passes are independent, and run in parallel. The best integer solution is returned
+ */
+public class MCFRounding
+{
+	private final static double PRECISIONFACTOR = 1e-6;
+
+	private final List<DoubleMatrix2D> x_psc;
+	private final double cost;
+	private final int numFeasiblePasses;
+	private final long workerAllocatedBytes;
+
+	/* A rounded solution: candidate, initial slot and copy (core, or 0) of each lightpath, and its cost */
+	private static class Pass
+	{
+		IntArrayList p_l = new IntArrayList (), s_l = new IntArrayList (), g_l = new IntArrayList ();
+		Map<Long,Integer> number_psg = new HashMap<Long,Integer> (); /* number of lightpaths of each variable, in (p S + s) G + g */
+		double cost;
+
+		int getNumberOfLightpaths (int p , int s , int g , int S , int G)
+		{
+			final Integer number = number_psg.get(((long) p * S + s) * G + g);
+			return number == null? 0 : number;
+		}
+	}
+
+	private MCFRounding (List<DoubleMatrix2D> x_psc , double cost , int numFeasiblePasses , long workerAllocatedBytes)
+	{
+		this.x_psc = x_psc;
+		this.cost = cost;
+		this.numFeasiblePasses = numFeasiblePasses;
+		this.workerAllocatedBytes = workerAllocatedBytes;
+	}
+
+	/** Rounds the solution of the LP relaxation
+	 * @param candidates the candidates
+	 * @param relaxed_psc the relaxed solution: one P x S matrix per core (core continuity), or one
+	 * @param capacity maximum number of lightpaths in each link and slot of each matrix (1 per core, or C)
+	 * @param maxLightpathsPerVariable maximum number of lightpaths of each candidate, initial slot and matrix
+	 * @param E number of links
+	 * @param h_d traffic to carry of each demand
+	 * @param residualCapacity_c if not null, the lightpaths allowed in each link and slot (e S + s) of each matrix, instead of capacity
+	 * @param feasibleCore_pc if not null, true if the candidate p can use the core c
+	 * @param numPasses number of rounding passes
+	 * @param seed seed of the random numbers (the pass n uses seed + n)
+	 * @param numThreads number of passes run in parallel
+	 * @return the best rounding
+	 */
+	public static MCFRounding round (final MCFCandidateLightpaths candidates , List<DoubleMatrix2D> relaxed_psc , int capacity , final int maxLightpathsPerVariable , int E , final DoubleMatrix1D h_d ,
+			List<DoubleMatrix1D> residualCapacity_c , final boolean [][] feasibleCore_pc , int numPasses , final long seed , int numThreads)
+	{
+		final int P = candidates.getNumberOfCandidates();
+		final int G = relaxed_psc.size();
+		final int S = relaxed_psc.get(0).columns();
+
+		/* Nonzero variables of the relaxation, and their total per candidate */
+		final IntArrayList entryP = new IntArrayList (), entryS = new IntArrayList (), entryG = new IntArrayList ();
+		final DoubleArrayList entryValue = new DoubleArrayList ();
+		final double [] value_p = new double [P];
+		IntArrayList rows = new IntArrayList (); IntArrayList columns = new IntArrayList (); DoubleArrayList vals = new DoubleArrayList ();
+		for (int g = 0 ; g < G ; g ++)
+		{
+			relaxed_psc.get(g).getNonZeros(rows , columns , vals);
+			for (int cont = 0 ; cont < rows.size() ; cont ++)
+			{
+				if (vals.get(cont) <= PRECISIONFACTOR) continue;
+				entryP.add(rows.get(cont)); entryS.add(columns.get(cont)); entryG.add(g); entryValue.add(vals.get(cont));
+				value_p [rows.get(cont)] += vals.get(cont);
+			}
+		}
+
+		/* Lightpaths that still fit in each link and slot of each matrix, before placing any */
+		final int [][] free_ges = new int [G][E * S];
+		for (int g = 0 ; g < G ; g ++)
+			for (int q = 0 ; q < E * S ; q ++)
+				free_ges [g][q] = residualCapacity_c == null? capacity : (int) Math.round(residualCapacity_c.get(g).get(q));
+
+		/* Candidates of each demand, from the highest to the lowest LP value */
+		final List<List<Integer>> candidates_d = new ArrayList<List<Integer>> ();
+		for (int d = 0 ; d < h_d.size() ; d ++) candidates_d.add(new ArrayList<Integer> ());
+		for (int p = 0 ; p < P ; p ++) candidates_d.get(candidates.demand_p.get(p).getIndex()).add(p);
+		for (List<Integer> list : candidates_d)
+			Collections.sort(list , new Comparator<Integer> ()
+			{
+				public int compare (Integer p1 , Integer p2) { return Double.compare(value_p [p2] , value_p [p1]); }
+			});
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1 , Math.min(numThreads , numPasses)));
+		List<Future<Pass>> futures = new ArrayList<Future<Pass>> ();
+		final AtomicLong workerAllocatedBytes = new AtomicLong (MCFUtils.getCurrentThreadAllocatedBytes() < 0? -1 : 0);
+		for (int n = 0 ; n < numPasses ; n ++)
+		{
+			final Random rng = new Random (seed + n);
+			futures.add(executor.submit(new Callable<Pass> ()
+			{
+				public Pass call ()
+				{
+					final long initAllocatedBytes = MCFUtils.getCurrentThreadAllocatedBytes();
+					try { return roundOnce(candidates , entryP , entryS , entryG , entryValue , candidates_d , value_p , free_ges , S , maxLightpathsPerVariable , h_d , feasibleCore_pc , rng); }
+					finally { if (initAllocatedBytes >= 0) workerAllocatedBytes.addAndGet(MCFUtils.getCurrentThreadAllocatedBytes() - initAllocatedBytes); }
+				}
+			}));
+		}
+		executor.shutdown();
+
+		Pass best = null;
+		int numFeasiblePasses = 0;
+		try
+		{
+			for (Future<Pass> future : futures)
+			{
+				final Pass pass;
+				try { pass = future.get(); }
+				catch (ExecutionException e) { throw new Net2PlanException ("Error in the rounding: " + e.getCause().getMessage()); }
+				catch (InterruptedException e) { throw new Net2PlanException ("Interrupted while rounding"); }
+				if (pass == null) continue;
+				numFeasiblePasses ++;
+				if (best == null || pass.cost < best.cost) best = pass;
+			}
+		} finally { executor.shutdownNow(); }
+		if (best == null) return new MCFRounding (null , Double.MAX_VALUE , 0 , workerAllocatedBytes.get());
+
+		List<DoubleMatrix2D> x_psc = new ArrayList<DoubleMatrix2D> ();
+		for (int g = 0 ; g < G ; g ++) x_psc.add(DoubleFactory2D.sparse.make(P , S));
+		for (int l = 0 ; l < best.p_l.size() ; l ++)
+		{
+			final DoubleMatrix2D x_ps = x_psc.get(best.g_l.get(l));
+			x_ps.set(best.p_l.get(l) , best.s_l.get(l) , x_ps.get(best.p_l.get(l) , best.s_l.get(l)) + 1);
+		}
+		return new MCFRounding (x_psc , best.cost , numFeasiblePasses , workerAllocatedBytes.get());
+	}
+
+	/** Returns the rounded solution (one P x S matrix per core, or one), or null if no pass found a feasible one */
+	public List<DoubleMatrix2D> getSolution () { return x_psc; }
+
+	/** Returns the cost of the rounded solution */
+	public double getCost () { return cost; }
+
+	/** Returns the number of passes that found a feasible solution */
+	public int getNumberOfFeasiblePasses () { return numFeasiblePasses; }
+
+	/** Returns the bytes allocated by the passes, in the threads of the pool (-1 if the JVM does not measure them) */
+	public long getWorkerAllocatedBytes () { return workerAllocatedBytes; }
+
+	/* One pass of rounding, repair and removal of redundant lightpaths. Returns null if some traffic cannot be carried */
+	private static Pass roundOnce (MCFCandidateLightpaths candidates , IntArrayList entryP , IntArrayList entryS , IntArrayList entryG , DoubleArrayList entryValue ,
+			List<List<Integer>> candidates_d , double [] value_p , int [][] initialFree_ges , int S , int maxLightpathsPerVariable , DoubleMatrix1D h_d , boolean [][] feasibleCore_pc , Random rng)
+	{
+		final int G = initialFree_ges.length;
+		final int [][] free_ges = new int [G][];
+		for (int g = 0 ; g < G ; g ++) free_ges [g] = initialFree_ges [g].clone();
+		final double [] remaining_d = h_d.toArray();
+		Pass res = new Pass ();
+
+		/* Number of lightpaths of each variable, and random order weighted by the values (key u^(1/v), from the highest) */
+		final int numEntries = entryP.size();
+		final int [] number_n = new int [numEntries];
+		final double [] key_n = new double [numEntries];
+		List<Integer> order = new ArrayList<Integer> (numEntries);
+		for (int n = 0 ; n < numEntries ; n ++)
+		{
+			final double value = entryValue.get(n);
+			final double integerPart = Math.floor(value + PRECISIONFACTOR);
+			number_n [n] = Math.min(maxLightpathsPerVariable , (int) integerPart + (rng.nextDouble() < value - integerPart? 1 : 0));
+			key_n [n] = Math.log(rng.nextDouble()) / value;
+			order.add(n);
+		}
+		Collections.sort(order , new Comparator<Integer> ()
+		{
+			public int compare (Integer n1 , Integer n2) { return Double.compare(key_n [n2] , key_n [n1]); }
+		});
+		for (int n : order)
+		{
+			final int p = entryP.get(n);
+			final int d = candidates.demand_p.get(p).getIndex();
+			for (int cont = 0 ; cont < number_n [n] && remaining_d [d] > PRECISIONFACTOR ; cont ++)
+			{
+				if (!isFree(candidates.seqLinks_p.get(p) , free_ges [entryG.get(n)] , entryS.get(n) , candidates.numSlots_p.get(p) , S)) break;
+				add(res , candidates , free_ges , p , entryS.get(n) , entryG.get(n) , S , remaining_d);
+			}
+		}
+
+		/* Repair: first-fit of the traffic not carried, from the demand with most traffic left */
+		List<Integer> demandsToRepair = new ArrayList<Integer> ();
+		for (int d = 0 ; d < remaining_d.length ; d ++) if (remaining_d [d] > PRECISIONFACTOR) demandsToRepair.add(d);
+		Collections.sort(demandsToRepair , new Comparator<Integer> ()
+		{
+			public int compare (Integer d1 , Integer d2) { return Double.compare(remaining_d [d2] , remaining_d [d1]); }
+		});
+		for (int d : demandsToRepair)
+			while (remaining_d [d] > PRECISIONFACTOR)
+				if (!repair(res , candidates , candidates_d.get(d) , value_p , free_ges , S , maxLightpathsPerVariable , remaining_d , feasibleCore_pc)) return null;
+
+		/* Remove the redundant lightpaths of each demand, from the most expensive */
+		List<Integer> lightpaths = new ArrayList<Integer> ();
+		for (int l = 0 ; l < res.p_l.size() ; l ++) lightpaths.add(l);
+		final MCFCandidateLightpaths c = candidates;
+		final Pass pass = res;
+		Collections.sort(lightpaths , new Comparator<Integer> ()
+		{
+			public int compare (Integer l1 , Integer l2) { return Double.compare(c.cost_p.get(pass.p_l.get(l2)) , c.cost_p.get(pass.p_l.get(l1))); }
+		});
+		boolean [] removed_l = new boolean [res.p_l.size()];
+		for (int l : lightpaths)
+		{
+			final int p = res.p_l.get(l);
+			final int d = candidates.demand_p.get(p).getIndex();
+			if (remaining_d [d] + candidates.lineRate_p.get(p) <= PRECISIONFACTOR) { removed_l [l] = true; remaining_d [d] += candidates.lineRate_p.get(p); }
+		}
+		Pass result = new Pass ();
+		for (int l = 0 ; l < res.p_l.size() ; l ++)
+		{
+			if (removed_l [l]) continue;
+			result.p_l.add(res.p_l.get(l)); result.s_l.add(res.s_l.get(l)); result.g_l.add(res.g_l.get(l));
+			result.cost += candidates.cost_p.get(res.p_l.get(l));
+		}
+		return result;
+	}
+
+	/* Places one lightpath of the demand with its candidate of highest LP value that has a free block of slots in some core, or if none of these has
+	 * one, with its candidate of lowest cost per carried Gbps that has it. Returns false if there is none */
+	private static boolean repair (Pass res , MCFCandidateLightpaths candidates , List<Integer> candidates_d , double [] value_p , int [][] free_ges , int S , int maxLightpathsPerVariable , 
+			double [] remaining_d , boolean [][] feasibleCore_pc)
+	{
+		final int d = candidates.demand_p.get(candidates_d.get(0)).getIndex();
+		int bestP = -1, bestS = -1, bestG = -1;
+		double bestCostPerGbps = Double.MAX_VALUE;
+		for (int p : candidates_d) /* from the highest LP value */
+		{
+			if (bestP != -1 && value_p [bestP] > 0) break;
+			final double costPerGbps = candidates.cost_p.get(p) / Math.min(candidates.lineRate_p.get(p) , remaining_d [d]);
+			if (bestP != -1 && costPerGbps >= bestCostPerGbps) continue;
+			for (int g = 0 ; g < free_ges.length ; g ++)
+			{
+				if (feasibleCore_pc != null && !feasibleCore_pc [p][g]) continue;
+				int s = getFirstFitInitialSlot(candidates.seqLinks_p.get(p) , free_ges [g] , candidates.numSlots_p.get(p) , S , 0);
+				while (s != -1 && res.getNumberOfLightpaths(p , s , g , S , free_ges.length) >= maxLightpathsPerVariable)
+					s = getFirstFitInitialSlot(candidates.seqLinks_p.get(p) , free_ges [g] , candidates.numSlots_p.get(p) , S , s + 1);
+				if (s == -1) continue;
+				bestP = p; bestS = s; bestG = g; bestCostPerGbps = costPerGbps;
+				break;
+			}
+		}
+		if (bestP == -1) return false;
+		add(res , candidates , free_ges , bestP , bestS , bestG , S , remaining_d);
+		return true;
+	}
+
+	private static void add (Pass res , MCFCandidateLightpaths candidates , int [][] free_ges , int p , int s , int g , int S , double [] remaining_d)
+	{
+		for (Link e : candidates.seqLinks_p.get(p))
+			for (int s2 = s ; s2 < s + candidates.numSlots_p.get(p) ; s2 ++) free_ges [g][e.getIndex() * S + s2] --;
+		res.p_l.add(p); res.s_l.add(s); res.g_l.add(g);
+		res.number_psg.put(((long) p * S + s) * free_ges.length + g , res.getNumberOfLightpaths(p , s , g , S , free_ges.length) + 1);
+		remaining_d [candidates.demand_p.get(p).getIndex()] -= candidates.lineRate_p.get(p);
+	}
+
+	private static boolean isFree (List<Link> seqLinks , int [] free_es , int initialSlot , int numSlots , int S)
+	{
+		if (initialSlot < 0 || initialSlot + numSlots > S) return false;
+		for (Link e : seqLinks)
+			for (int s = initialSlot ; s < initialSlot + numSlots ; s ++)
+				if (free_es [e.getIndex() * S + s] <= 0) return false;
+		return true;
+	}
+
+	private static int getFirstFitInitialSlot (List<Link> seqLinks , int [] free_es , int numSlots , int S , int minInitialSlot)
+	{
+		int run = 0;
+		for (int s = minInitialSlot ; s < S ; s ++)
+		{
+			boolean isFree = true;
+			for (Link e : seqLinks) if (free_es [e.getIndex() * S + s] <= 0) { isFree = false; break; }
+			if (!isFree) run = 0;
+			else if (++ run == numSlots) return s - numSlots + 1;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.List;
+
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+
+/** Occupancy of the frequency slots of each core of each link, stored as one bitset (array of longs) per link and core
+ */
+public class MCFSpectrumOccupancy
+{
+	private final int E;
+	private final int C;
+	private final int S;
+	private final int numWords;
+	private final long [] occupied_ecw; /* word w of the bitset of link e and core c, in position (e C + c) numWords + w */
+	private final int [] numOccupiedSlots_c;
+
+	/** Creates the occupancy of E links with C cores and S slots per core, all of them idle */
+	public MCFSpectrumOccupancy (int E , int C , int S)
+	{
+		this.E = E;
+		this.C = C;
+		this.S = S;
+		this.numWords = (S + 63) / 64;
+		this.occupied_ecw = new long [E * C * numWords];
+		this.numOccupiedSlots_c = new int [C];
+	}
+
+	public int getNumberOfLinks () { return E; }
+
+	public int getNumberOfCores () { return C; }
+
+	public int getNumberOfSlotsPerCore () { return S; }
+
+	/** Returns true if the slot s of the core c of link e is occupied */
+	public boolean isOccupied (int e , int c , int s)
+	{
+		return (occupied_ecw [(e * C + c) * numWords + (s >>> 6)] & (1L << s)) != 0;
+	}
+
+	/** Returns true if the slots from initialSlot to initialSlot + numSlots - 1 are idle in the core c of all the links */
+	public boolean isFree (List<Link> seqLinks , int c , int initialSlot , int numSlots)
+	{
+		if (initialSlot < 0 || initialSlot + numSlots > S) return false;
+		for (Link e : seqLinks)
+			for (int s = initialSlot ; s < initialSlot + numSlots ; s ++)
+				if (isOccupied(e.getIndex() , c , s)) return false;
+		return true;
+	}
+
+	/** Sets as occupied the slots from initialSlot to initialSlot + numSlots - 1 in the core c of all the links. Throws an exception if any was already occupied */
+	public void allocate (List<Link> seqLinks , int c , int initialSlot , int numSlots)
+	{
+		if (!isFree(seqLinks , c , initialSlot , numSlots)) throw new Net2PlanException ("Frequency slots " + initialSlot + " to " + (initialSlot + numSlots - 1) + " of core " + c + " are not available in the links " + seqLinks);
+		for (Link e : seqLinks)
+			for (int s = initialSlot ; s < initialSlot + numSlots ; s ++)
+				occupied_ecw [(e.getIndex() * C + c) * numWords + (s >>> 6)] |= (1L << s);
+		numOccupiedSlots_c [c] += seqLinks.size() * numSlots;
+	}
+
+	/** Sets as idle the slots from initialSlot to initialSlot + numSlots - 1 in the core c of all the links */
+	public void release (List<Link> seqLinks , int c , int initialSlot , int numSlots)
+	{
+		for (Link e : seqLinks)
+			for (int s = initialSlot ; s < initialSlot + numSlots ; s ++)
+			{
+				final int word = (e.getIndex() * C + c) * numWords + (s >>> 6);
+				if ((occupied_ecw [word] & (1L << s)) == 0) continue;
+				occupied_ecw [word] &= ~(1L << s);
+				numOccupiedSlots_c [c] --;
+			}
+	}
+
+	/** Returns the lowest initial slot of a block of numSlots contiguous slots idle in the core c of all the links, or -1 if there is none */
+	public int getFirstFitInitialSlot (List<Link> seqLinks , int c , int numSlots)
+	{
+		return getFirstFitInitialSlot(seqLinks , c , numSlots , 0);
+	}
+
+	/** Returns the lowest initial slot, not lower than minInitialSlot, of a block of numSlots contiguous slots idle in the core c of all the links, or -1 if there is none */
+	public int getFirstFitInitialSlot (List<Link> seqLinks , int c , int numSlots , int minInitialSlot)
+	{
+		long [] union_w = new long [numWords];
+		for (Link e : seqLinks)
+		{
+			final int offset = (e.getIndex() * C + c) * numWords;
+			for (int w = 0 ; w < numWords ; w ++) union_w [w] |= occupied_ecw [offset + w];
+		}
+		int run = 0;
+		for (int s = Math.max(0 , minInitialSlot) ; s < S ; s ++)
+		{
+			if ((union_w [s >>> 6] & (1L << s)) != 0) run = 0;
+			else if (++ run == numSlots) return s - numSlots + 1;
+		}
+		return -1;
+	}
+
+	/** Returns the number of occupied (link, slot) pairs in the core c */
+	public int getNumberOfOccupiedSlots (int c)
+	{
+		return numOccupiedSlots_c [c];
+	}
+}
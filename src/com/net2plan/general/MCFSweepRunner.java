@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.utils.InputParameter;
+import com.net2plan.utils.Triple;
+
+/** Runs {@link MCF_ILP_UPC_UPCT_Coop} for all the combinations of a grid of numCores, trafficFactor and ilpType values, each one in its own copy
+ * of the input design, in a bounded pool of worker threads. The solver calls go through {@link MCFUtils#solve}: with a solver other than CPLEX, 
+ * they run one at a time, and the workers only overlap the rest of the work. The results of all the points are written to one CSV file.
+ * <p>Usage: {@code MCFSweepRunner <input.n2p> <results.csv> [name=value ...]}, where the names are:</p>
+ * <ul>
+ * <li>numCores, trafficFactor, ilpType: comma-separated values of the grid (default: 7 ; 1.0 ; non-core-continuity-constraint)</li>
+ * <li>numWorkers: number of points solved in parallel (default: 1). With CPLEX, up to number of processors / threadsPerSolve</li>
+ * <li>threadsPerSolve: threads of each solver execution, passed as the solverNumThreads parameter (default: 1)</li>
+ * <li>warmStart: if previous-traffic-factor, the points with the same numCores and ilpType are solved in increasing traffic factor, in the same
+ * worker, and each one starts from the lightpaths of the previous one (initialSolution=input-routes). Default: none</li>
+ * <li>saveDesigns: if true, the resulting design of each point is saved next to the CSV file (default: false)</li>
+ * <li>candidateCacheFile: file of the candidate paths cache (default: the input file name plus .mcfcache). Each entry is stored in its own
+ * file, with the beginning of its fingerprint before the extension, so the points with the same numCores reuse the candidates computed by the
+ * first one, and the points of other numCores do not overwrite them</li>
+ * <li>any other input parameter of {@link MCF_ILP_UPC_UPCT_Coop} (k, solverName...), used in all the points</li>
+ * </ul>
+ */
+public class MCFSweepRunner
+{
+	/** The result of one point of the sweep */
+	public static class SweepResult
+	{
+		public final int numCores;
+		public final double trafficFactor;
+		public final String ilpType;
+		public double throughput;
+		public double totalFSOccupied;
+		public double totalOfferedTraffic;
+		public double executionTimeInSeconds;
+		public String status = "not executed";
+
+		SweepResult (int numCores , double trafficFactor , String ilpType)
+		{
+			this.numCores = numCores;
+			this.trafficFactor = trafficFactor;
+			this.ilpType = ilpType;
+		}
+	}
+
+	public static void main (String [] args) throws Exception
+	{
+		if (args.length < 2) throw new IllegalArgumentException ("Usage: MCFSweepRunner <input.n2p> <results.csv> [name=value ...]");
+		final File inputFile = new File (args [0]);
+		final File outputFile = new File (args [1]);
+		Map<String,String> options = new HashMap<String,String> ();
+		for (int cont = 2 ; cont < args.length ; cont ++)
+		{
+			final int pos = args [cont].indexOf('=');
+			if (pos <= 0) throw new IllegalArgumentException ("Wrong argument (name=value expected): " + args [cont]);
+			options.put(args [cont].substring(0 , pos).trim() , args [cont].substring(pos + 1).trim());
+		}
+
+		final List<Integer> numCoresValues = new ArrayList<Integer> ();
+		for (String value : remove(options , "numCores" , "7").split(",")) numCoresValues.add(Integer.parseInt(value.trim()));
+		final List<Double> trafficFactorValues = new ArrayList<Double> ();
+		for (String value : remove(options , "trafficFactor" , "1.0").split(",")) trafficFactorValues.add(Double.parseDouble(value.trim()));
+		final List<String> ilpTypeValues = new ArrayList<String> ();
+		for (String value : remove(options , "ilpType" , "non-core-continuity-constraint").split(",")) ilpTypeValues.add(value.trim());
+		final int threadsPerSolve = Integer.parseInt(remove(options , "threadsPerSolve" , "1"));
+		final int numWorkers = Integer.parseInt(remove(options , "numWorkers" , "1"));
+		final boolean chainTrafficFactors = remove(options , "warmStart" , "none").equalsIgnoreCase("previous-traffic-factor");
+		final File designsDirectory = Boolean.parseBoolean(remove(options , "saveDesigns" , "false"))? outputFile.getAbsoluteFile().getParentFile() : null;
+
+		if (!options.containsKey("candidateCacheFile")) options.put("candidateCacheFile" , inputFile.getPath() + ".mcfcache");
+
+		final NetPlan netPlan = new NetPlan (inputFile);
+		final List<SweepResult> results = runSweep(netPlan , numCoresValues , trafficFactorValues , ilpTypeValues , options , numWorkers , threadsPerSolve , chainTrafficFactors , designsDirectory);
+		writeResults(results , outputFile);
+	}
+
+	/** Runs the sweep. The input design is not modified
+	 * @param netPlan the input design
+	 * @param numCoresValues values of numCores
+	 * @param trafficFactorValues values of trafficFactor
+	 * @param ilpTypeValues values of ilpType
+	 * @param algorithmParameters other parameters of the algorithm, common to all the points (the rest take their default values)
+	 * @param numWorkers number of points solved in parallel
+	 * @param threadsPerSolve threads of each solver execution
+	 * @param chainTrafficFactors if true, the points with the same numCores and ilpType are solved in increasing traffic factor, each one starting from the previous solution
+	 * @param designsDirectory if not null, the resulting designs are saved in this directory
+	 * @return the results, in the order of the grid (numCores, then ilpType, then trafficFactor)
+	 */
+	public static List<SweepResult> runSweep (final NetPlan netPlan , List<Integer> numCoresValues , List<Double> trafficFactorValues , List<String> ilpTypeValues ,
+			Map<String,String> algorithmParameters , int numWorkers , int threadsPerSolve , boolean chainTrafficFactors , final File designsDirectory) throws InterruptedException
+	{
+		final Map<String,String> commonParameters = getDefaultParameters();
+		commonParameters.putAll(algorithmParameters);
+		commonParameters.put("solverNumThreads" , "" + threadsPerSolve);
+
+		List<Double> sortedTrafficFactors = new ArrayList<Double> (trafficFactorValues);
+		if (chainTrafficFactors) Collections.sort(sortedTrafficFactors);
+
+		/* One task per point, or per chain of traffic factors */
+		List<List<SweepResult>> tasks = new ArrayList<List<SweepResult>> ();
+		List<SweepResult> results = new ArrayList<SweepResult> ();
+		for (int C : numCoresValues)
+			for (String ilpType : ilpTypeValues)
+			{
+				List<SweepResult> chain = new ArrayList<SweepResult> ();
+				for (double alpha : sortedTrafficFactors)
+				{
+					SweepResult result = new SweepResult (C , alpha , ilpType);
+					results.add(result);
+					if (chainTrafficFactors) chain.add(result); else tasks.add(Collections.singletonList(result));
+				}
+				if (chainTrafficFactors) tasks.add(chain);
+			}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1 , numWorkers));
+		List<Future<?>> futures = new ArrayList<Future<?>> ();
+		for (final List<SweepResult> task : tasks)
+			futures.add(executor.submit(new Runnable ()
+			{
+				public void run() { runTask(netPlan , task , commonParameters , designsDirectory); }
+			}));
+		executor.shutdown();
+		for (Future<?> future : futures)
+			try { future.get(); } catch (Exception e) { e.printStackTrace(); }
+		return results;
+	}
+
+	/* Solves the points of the task in order. In a chain, each design starts from the previous solution, with the original offered traffic */
+	private static void runTask (NetPlan netPlan , List<SweepResult> task , Map<String,String> commonParameters , File designsDirectory)
+	{
+		NetPlan previousDesign = null;
+		for (SweepResult result : task)
+		{
+			Map<String,String> parameters = new HashMap<String,String> (commonParameters);
+			parameters.put("numCores" , "" + result.numCores);
+			parameters.put("trafficFactor" , "" + result.trafficFactor);
+			parameters.put("ilpType" , result.ilpType);
+			NetPlan design = previousDesign;
+			synchronized (netPlan)
+			{
+				if (design == null) design = netPlan.copy();
+				else copyOfferedTraffic(netPlan , design);
+			}
+			if (previousDesign != null) parameters.put("initialSolution" , "input-routes");
+
+			final long initTime = System.nanoTime();
+			try
+			{
+				new MCF_ILP_UPC_UPCT_Coop ().executeAlgorithm(design , parameters , new HashMap<String,String> ());
+				result.throughput = design.getDemandTotalCarriedTraffic();
+				result.totalFSOccupied = design.getVectorLinkTotalOccupiedCapacity().zSum();
+				result.totalOfferedTraffic = design.getDemandTotalOfferedTraffic();
+				result.status = "ok";
+				if (designsDirectory != null)
+					design.saveToFile(new File (designsDirectory , design.getNetworkName() + "_" + result.ilpType + "_C" + result.numCores + "_alpha" + result.trafficFactor + ".n2p"));
+				previousDesign = design;
+			} catch (Exception e)
+			{
+				result.status = "error: " + e.getMessage();
+				previousDesign = null;
+			}
+			result.executionTimeInSeconds = (System.nanoTime() - initTime) / 1e9;
+		}
+	}
+
+	/* Sets the offered traffic of each demand of the design to the one of the demand of netPlan between the same nodes (in the same order, if 
+	 * there are several). The demands are not matched by index, since they are not guaranteed to keep it after the algorithm runs on the design */
+	private static void copyOfferedTraffic (NetPlan netPlan , NetPlan design)
+	{
+		Map<Long,LinkedList<Demand>> designDemands = new HashMap<Long,LinkedList<Demand>> ();
+		for (Demand d : design.getDemands())
+		{
+			final Long key = (((long) d.getIngressNode().getIndex()) << 32) | d.getEgressNode().getIndex();
+			if (!designDemands.containsKey(key)) designDemands.put(key , new LinkedList<Demand> ());
+			designDemands.get(key).add(d);
+		}
+		for (Demand d : netPlan.getDemands())
+		{
+			final LinkedList<Demand> candidates = designDemands.get((((long) d.getIngressNode().getIndex()) << 32) | d.getEgressNode().getIndex());
+			if (candidates == null || candidates.isEmpty()) throw new Net2PlanException ("The previous design has no demand from node " + d.getIngressNode().getIndex() + " to node " + d.getEgressNode().getIndex());
+			candidates.removeFirst().setOfferedTraffic(d.getOfferedTraffic());
+		}
+	}
+
+	/** Writes the results as a CSV file, one line per point */
+	public static void writeResults (List<SweepResult> results , File file) throws IOException
+	{
+		FileWriter fw = new FileWriter(file);
+		fw.write("numCores,trafficFactor,ilpType,throughputGbps,totalFSOccupied,offeredTrafficGbps,executionTimeSeconds,status\r\n");
+		for (SweepResult result : results)
+			fw.write(result.numCores + "," + result.trafficFactor + "," + result.ilpType + "," + result.throughput + "," + result.totalFSOccupied + "," +
+					result.totalOfferedTraffic + "," + result.executionTimeInSeconds + ",\"" + result.status.replace("\"" , "'") + "\"\r\n");
+		fw.close();
+	}
+
+	/* Default values of the input parameters of the algorithm (the first option in the selection ones) */
+	private static Map<String,String> getDefaultParameters ()
+	{
+		Map<String,String> res = new LinkedHashMap<String,String> ();
+		for (Triple<String,String,String> param : InputParameter.getInformationAllInputParameterFieldsOfObject(new MCF_ILP_UPC_UPCT_Coop ()))
+		{
+			String defaultValue = param.getSecond().trim();
+			if (defaultValue.startsWith("#select#")) defaultValue = defaultValue.substring("#select#".length()).trim().split("\\s+") [0];
+			res.put(param.getFirst() , defaultValue);
+		}
+		return res;
+	}
+
+	private static String remove (Map<String,String> options , String name , String defaultValue)
+	{
+		final String value = options.remove(name);
+		return value == null? defaultValue : value;
+	}
+}
@@ -1,43 +1,479 @@
 package com.net2plan.general;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.jom.OptimizationProblem;
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
 import com.net2plan.interfaces.networkDesign.NetPlan;
 import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.interfaces.networkDesign.Node;
 import com.net2plan.interfaces.networkDesign.Route;
-import com.net2plan.libraries.WDMUtils;
 import com.net2plan.libraries.WDMUtils.RSA;
 
-import cern.colt.matrix.tdouble.DoubleFactory2D;
-import cern.colt.matrix.tdouble.DoubleMatrix1D;
-import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.list.tint.IntArrayList;
 
 public class MCFUtils 
 {
 	
+	/** A frequency slot of a core of a link occupied by more than one lightpath, or occupied by a lightpath but out of the spectrum of the fiber */
+	public static class SlotClash
+	{
+		public final Link link;
+		public final int core;
+		public final int slot;
+		public final List<Route> routes = new ArrayList<Route> ();
+
+		SlotClash (Link link , int core , int slot)
+		{
+			this.link = link;
+			this.core = core;
+			this.slot = slot;
+		}
+
+		@Override
+		public String toString ()
+		{
+			StringBuilder st = new StringBuilder ();
+			st.append("link " + link.getIndex() + ", core " + core + ", slot " + slot + (routes.size() == 1? " (out of the fiber spectrum)" : "") + ": routes");
+			for (Route r : routes) st.append(" " + r.getIndex());
+			return st.toString();
+		}
+	}
+
+	/** Checks that no frequency slot of a core of a link is occupied by more than one lightpath, and that the slots are within the spectrum of each 
+	 * fiber (its capacity). The core of each lightpath is its attribute fiberCoreID
+	 * @throws Net2PlanException with all the clashes found, if any
+	 */
 	public static void checkResourceAllocationClashingPerCore (NetPlan netPlan, int C ,NetworkLayer ... optionalLayerParameter)
 	{
-		final int E = netPlan.getNumberOfLinks (optionalLayerParameter);
-		DoubleMatrix1D w_f = netPlan.getVectorLinkCapacity(optionalLayerParameter) ;
-		final int W = w_f.size () == 0? 0 : (int) w_f.getMaxLocation() [0];
+		final List<SlotClash> clashes = getResourceAllocationClashesPerCore(netPlan , C , optionalLayerParameter);
+		if (clashes.isEmpty()) return;
+		StringBuilder st = new StringBuilder ();
+		st.append(clashes.size() + " frequency slot clashes:");
+		for (SlotClash clash : clashes) st.append("\n" + clash);
+		throw new Net2PlanException (st.toString());
+	}
 
-		for(int c = 0; c < C; c++)
+	/** Returns all the frequency slots of a core of a link occupied by more than one lightpath, or out of the spectrum of the fiber, in increasing
+	 * order of link, core and slot. The routes are read once, marking the occupied slots in one bitset per link and core. Only if a clash is 
+	 * found, a second pass collects the routes involved
+	 * @throws Net2PlanException if a lightpath has no valid fiberCoreID attribute
+	 */
+	public static List<SlotClash> getResourceAllocationClashesPerCore (NetPlan netPlan, int C ,NetworkLayer ... optionalLayerParameter)
+	{
+		final List<Link> links = netPlan.getLinks(optionalLayerParameter);
+		final int E = links.size();
+		final int [] numSlots_e = new int [E];
+		int W = 0;
+		for (Link e : links) { numSlots_e [e.getIndex()] = (int) e.getCapacity(); W = Math.max(W , numSlots_e [e.getIndex()]); }
+		final int numWords = (W + 63) / 64;
+
+		/* First pass: the occupied slots, and the clashing ones (a second occupation, or out of the fiber spectrum) */
+		final long [] occupied_ecw = new long [E * C * numWords];
+		long [] clashing_ecw = null;
+		final List<Route> lpRoutes = new ArrayList<Route> ();
+		final List<RSA> rsas = new ArrayList<RSA> ();
+		final IntArrayList cores = new IntArrayList ();
+		List<SlotClash> outOfSpectrum = new ArrayList<SlotClash> ();
+		for (Route lpRoute : netPlan.getRoutes(optionalLayerParameter))
+		{
+			if (lpRoute.getOccupiedCapacity() == 0) continue; // not been used now
+			final int c = getFiberCore(lpRoute , C);
+			final RSA rsa = new RSA (lpRoute , false);
+			lpRoutes.add(lpRoute); rsas.add(rsa); cores.add(c);
+			for (int cont = 0 ; cont < rsa.seqLinks.size() ; cont ++)
+			{
+				final int e = rsa.seqLinks.get(cont).getIndex();
+				for (int row = 0 ; row < rsa.seqFrequencySlots_se.rows() ; row ++)
+				{
+					final int s = (int) rsa.seqFrequencySlots_se.get(row , cont);
+					if (s < 0 || s >= numSlots_e [e])
+					{
+						SlotClash clash = new SlotClash (rsa.seqLinks.get(cont) , c , s);
+						clash.routes.add(lpRoute);
+						outOfSpectrum.add(clash);
+						continue;
+					}
+					final int word = (e * C + c) * numWords + (s >>> 6);
+					if ((occupied_ecw [word] & (1L << s)) == 0) { occupied_ecw [word] |= (1L << s); continue; }
+					if (clashing_ecw == null) clashing_ecw = new long [occupied_ecw.length];
+					clashing_ecw [word] |= (1L << s);
+				}
+			}
+		}
+		if (clashing_ecw == null) return outOfSpectrum;
+
+		/* Second pass: the routes occupying each clashing slot */
+		final Map<Long,SlotClash> clashes = new TreeMap<Long,SlotClash> ();
+		for (int l = 0 ; l < lpRoutes.size() ; l ++)
 		{
-			DoubleMatrix2D frequencySlot2FiberOccupancy_se = DoubleFactory2D.dense.make (W,E);
-			
-			/* The wavelengths above the maximum number of wavelengths of a fiber, are set as occupied */
-			for (int e = 0 ; e < E ; e ++) 
-				for (int w = (int) w_f.get(e) ; w < W ; w ++) 
-					frequencySlot2FiberOccupancy_se.set (e,w,1);
-			
-			/* Wavlengths occupied by the lightpaths as routes */
-			for (Route lpRoute : netPlan.getRoutes(optionalLayerParameter))			
-				if(lpRoute.getAttribute("fiberCoreId").equalsIgnoreCase(Integer.toString(c)))	
+			final RSA rsa = rsas.get(l);
+			final int c = cores.get(l);
+			for (int cont = 0 ; cont < rsa.seqLinks.size() ; cont ++)
+			{
+				final int e = rsa.seqLinks.get(cont).getIndex();
+				for (int row = 0 ; row < rsa.seqFrequencySlots_se.rows() ; row ++)
 				{
-					if (lpRoute.getOccupiedCapacity() == 0) continue; // not been used now
-					WDMUtils.allocateResources(new RSA (lpRoute , false) , frequencySlot2FiberOccupancy_se , null);
-				}			
+					final int s = (int) rsa.seqFrequencySlots_se.get(row , cont);
+					if (s < 0 || s >= numSlots_e [e]) continue;
+					if ((clashing_ecw [(e * C + c) * numWords + (s >>> 6)] & (1L << s)) == 0) continue;
+					final long key = ((long) (e * C + c)) * W + s;
+					SlotClash clash = clashes.get(key);
+					if (clash == null) { clash = new SlotClash (rsa.seqLinks.get(cont) , c , s); clashes.put(key , clash); }
+					clash.routes.add(lpRoutes.get(l));
+				}
+			}
 		}
+		List<SlotClash> res = new ArrayList<SlotClash> (clashes.values());
+		res.addAll(outOfSpectrum);
+		return res;
+	}
+
+	private static int getFiberCore (Route lpRoute , int C)
+	{
+		final String coreAttribute = lpRoute.getAttribute("fiberCoreID");
+		int c = -1;
+		if (coreAttribute != null) try { c = Integer.parseInt(coreAttribute.trim()); } catch (NumberFormatException e) { c = -1; }
+		if (c < 0 || c >= C) throw new Net2PlanException ("Route " + lpRoute.getIndex() + " has no valid fiberCoreID attribute (" + coreAttribute + ")");
+		return c;
 	}
 	
+	/** Sets the attribute fiberCoreIDs of the demand: the attribute fiberCoreID of each of its routes, space-separated */
+	public static void setFiberCoreIDsAttribute (Demand d)
+	{
+		StringBuilder coreIDs = new StringBuilder ();
+		for (Route r : d.getRoutes())
+			coreIDs.append(r.getAttribute("fiberCoreID")).append(' ');
+		d.setAttribute("fiberCoreIDs", coreIDs.toString());
+	}
+
+	/** Assigns a fiber core to each lightpath, so that two lightpaths sharing a link and at least one frequency slot are never in the same core. 
+	 * Lightpath l traverses the links seqLinks_l.get(l), occupying numSlots_l[l] slots starting at initialSlot_l[l]. The assignment is an exact 
+	 * C-coloring of the conflict graph, found by a DSATUR backtracking search in each connected component
+	 * @param isSearchLimitReached if not null, its first element is set to true if the search stopped after maxSearchNodes explored nodes 
+	 * without an assignment (it may exist), and to false otherwise 
+	 * @return the core of each lightpath, or null if no assignment exists or it was not found within maxSearchNodes explored nodes 
+	 */
+	public static int [] assignFiberCores (List<List<Link>> seqLinks_l , int [] initialSlot_l , int [] numSlots_l , int C , long maxSearchNodes , boolean [] isSearchLimitReached)
+	{
+		if (isSearchLimitReached != null) isSearchLimitReached [0] = false;
+		final int L = seqLinks_l.size();
+		
+		/* Lightpaths occupying each (link, slot) */
+		Map<Long,IntArrayList> lightpaths_es = new HashMap<Long,IntArrayList> ();
+		for (int l = 0 ; l < L ; l ++)
+			for (Link e : seqLinks_l.get(l))
+				for (int s = initialSlot_l [l] ; s < initialSlot_l [l] + numSlots_l [l] ; s ++)
+				{
+					final Long key = (((long) e.getIndex()) << 32) | s;
+					IntArrayList lps = lightpaths_es.get(key);
+					if (lps == null) { lps = new IntArrayList (); lightpaths_es.put(key , lps); }
+					if (lps.isEmpty() || lps.get(lps.size() - 1) != l) lps.add(l);
+				}
+
+		/* Conflict graph */
+		List<IntArrayList> neighbours_l = new ArrayList<IntArrayList> (L);
+		for (int l = 0 ; l < L ; l ++) neighbours_l.add(new IntArrayList ());
+		for (IntArrayList lps : lightpaths_es.values())
+		{
+			if (lps.size() > C) return null; /* more than C lightpaths in the same link and slot */
+			for (int i = 0 ; i < lps.size() ; i ++)
+				for (int j = i + 1 ; j < lps.size() ; j ++)
+				{
+					neighbours_l.get(lps.get(i)).add(lps.get(j));
+					neighbours_l.get(lps.get(j)).add(lps.get(i));
+				}
+		}
+		int [][] adjacency_l = new int [L][];
+		for (int l = 0 ; l < L ; l ++)
+		{
+			int [] neighbours = Arrays.copyOf(neighbours_l.get(l).elements() , neighbours_l.get(l).size());
+			Arrays.sort(neighbours);
+			int num = 0;
+			for (int cont = 0 ; cont < neighbours.length ; cont ++)
+				if (cont == 0 || neighbours [cont] != neighbours [cont - 1]) neighbours [num ++] = neighbours [cont];
+			adjacency_l [l] = Arrays.copyOf(neighbours , num);
+		}
+		neighbours_l = null;
+
+		/* Color each connected component independently */
+		int [] core_l = new int [L]; Arrays.fill(core_l , -1);
+		int [][] numNeighboursInCore_lc = new int [L][C];
+		int [] saturation_l = new int [L];
+		boolean [] visited_l = new boolean [L];
+		long [] searchNodes = new long [] { 0 };
+		for (int l = 0 ; l < L ; l ++)
+		{
+			if (visited_l [l]) continue;
+			IntArrayList component = new IntArrayList ();
+			component.add(l); visited_l [l] = true;
+			for (int cont = 0 ; cont < component.size() ; cont ++)
+				for (int n : adjacency_l [component.get(cont)])
+					if (!visited_l [n]) { visited_l [n] = true; component.add(n); }
+			if (!colorComponent(component , adjacency_l , C , core_l , numNeighboursInCore_lc , saturation_l , searchNodes , maxSearchNodes))
+			{
+				if (isSearchLimitReached != null) isSearchLimitReached [0] = searchNodes [0] > maxSearchNodes;
+				return null;
+			}
+		}
+		return core_l;
+	}
+	
+	/* DSATUR backtracking (iterative, to avoid deep recursions): the next lightpath is the one with more different cores used by its neighbours, 
+	 * and a new core is only opened if all the previous ones are tried (cores are interchangeable) */
+	private static boolean colorComponent (IntArrayList component , int [][] adjacency_l , int C , int [] core_l , int [][] numNeighboursInCore_lc , int [] saturation_l , long [] searchNodes , long maxSearchNodes)
+	{
+		final int N = component.size();
+		int [] lightpath_depth = new int [N];
+		int [] maxCoreBefore_depth = new int [N];
+		int depth = 0;
+		int maxCoreUsed = -1;
+		int nextCoreToTry = 0;
+		int current = selectNextLightpath(component , adjacency_l , core_l , saturation_l);
+		while (depth < N)
+		{
+			if (++ searchNodes [0] > maxSearchNodes) return false;
+			int core = -1;
+			for (int c = nextCoreToTry ; c <= Math.min(C - 1 , maxCoreUsed + 1) ; c ++)
+				if (numNeighboursInCore_lc [current][c] == 0) { core = c; break; }
+			if (core != -1)
+			{
+				lightpath_depth [depth] = current;
+				maxCoreBefore_depth [depth] = maxCoreUsed;
+				setCore(current , core , adjacency_l , core_l , numNeighboursInCore_lc , saturation_l);
+				maxCoreUsed = Math.max(maxCoreUsed , core);
+				depth ++;
+				nextCoreToTry = 0;
+				if (depth < N) current = selectNextLightpath(component , adjacency_l , core_l , saturation_l);
+			}
+			else
+			{
+				if (depth == 0) return false; /* all the options explored: no assignment exists */
+				depth --;
+				current = lightpath_depth [depth];
+				nextCoreToTry = core_l [current] + 1;
+				maxCoreUsed = maxCoreBefore_depth [depth];
+				unsetCore(current , adjacency_l , core_l , numNeighboursInCore_lc , saturation_l);
+			}
+		}
+		return true;
+	}
+
+	private static int selectNextLightpath (IntArrayList component , int [][] adjacency_l , int [] core_l , int [] saturation_l)
+	{
+		int best = -1;
+		for (int cont = 0 ; cont < component.size() ; cont ++)
+		{
+			final int l = component.get(cont);
+			if (core_l [l] != -1) continue;
+			if ((best == -1) || (saturation_l [l] > saturation_l [best]) || ((saturation_l [l] == saturation_l [best]) && (adjacency_l [l].length > adjacency_l [best].length))) best = l;
+		}
+		return best;
+	}
+
+	private static void setCore (int l , int core , int [][] adjacency_l , int [] core_l , int [][] numNeighboursInCore_lc , int [] saturation_l)
+	{
+		core_l [l] = core;
+		for (int n : adjacency_l [l])
+			if (numNeighboursInCore_lc [n][core] ++ == 0) saturation_l [n] ++;
+	}
+
+	private static void unsetCore (int l , int [][] adjacency_l , int [] core_l , int [][] numNeighboursInCore_lc , int [] saturation_l)
+	{
+		final int core = core_l [l];
+		core_l [l] = -1;
+		for (int n : adjacency_l [l])
+			if (-- numNeighboursInCore_lc [n][core] == 0) saturation_l [n] --;
+	}
+
+	/** Returns up to K loopless paths from originNode to destinationNode, in increasing order of length in km (Yen's algorithm), whose length is not 
+	 * higher than maxLengthInKm, and whose propagation delay is not higher than maxPropDelayInMs (if positive). The order of the paths does not 
+	 * depend on maxLengthInKm or K: a call with higher values returns the same paths first */
+	public static List<List<Link>> getKLooplessShortestPaths (List<Link> links , int N , Node originNode , Node destinationNode , int K , double maxLengthInKm , double maxPropDelayInMs)
+	{
+		List<List<Link>> outLinks_n = new ArrayList<List<Link>> (N);
+		for (int n = 0 ; n < N ; n ++) outLinks_n.add(new ArrayList<Link> ());
+		for (Link e : links) outLinks_n.get(e.getOriginNode().getIndex()).add(e);
+
+		List<List<Link>> res = new ArrayList<List<Link>> ();
+		List<List<Link>> shortestPaths = new ArrayList<List<Link>> (); /* all the paths found, including the ones exceeding the delay */
+		Set<List<Link>> pathsSeen = new HashSet<List<Link>> ();
+		PriorityQueue<List<Link>> candidatePaths = new PriorityQueue<List<Link>> (11 , new Comparator<List<Link>> ()
+		{
+			public int compare(List<Link> p1, List<Link> p2)
+			{
+				final int lengthComparison = Double.compare(MCFCandidateLightpaths.getLengthInKm(p1) , MCFCandidateLightpaths.getLengthInKm(p2));
+				if (lengthComparison != 0) return lengthComparison;
+				for (int cont = 0 ; cont < Math.min(p1.size() , p2.size()) ; cont ++)
+					if (p1.get(cont).getIndex() != p2.get(cont).getIndex()) return Integer.compare(p1.get(cont).getIndex() , p2.get(cont).getIndex());
+				return Integer.compare(p1.size() , p2.size());
+			}
+		});
+		final List<Link> shortestPath = getShortestPath(outLinks_n , N , originNode , destinationNode , new boolean [N] , Collections.<Link>emptySet());
+		if (shortestPath == null) return res;
+		candidatePaths.add(shortestPath); pathsSeen.add(shortestPath);
+		while (res.size() < K && !candidatePaths.isEmpty())
+		{
+			final List<Link> path = candidatePaths.poll();
+			if (MCFCandidateLightpaths.getLengthInKm(path) > maxLengthInKm) break;
+			shortestPaths.add(path);
+			if (maxPropDelayInMs <= 0 || getPropagationDelayInMs(path) <= maxPropDelayInMs) res.add(path);
+
+			/* Deviations from each node of the path, not repeating the root nor the links leaving it in the paths found with the same root */
+			for (int i = 0 ; i < path.size() ; i ++)
+			{
+				final List<Link> rootPath = path.subList(0 , i);
+				final Node spurNode = path.get(i).getOriginNode();
+				boolean [] excludedNodes = new boolean [N];
+				for (Link e : rootPath) excludedNodes [e.getOriginNode().getIndex()] = true;
+				Set<Link> excludedLinks = new HashSet<Link> ();
+				for (List<Link> previousPath : shortestPaths)
+					if (previousPath.size() > i && previousPath.subList(0 , i).equals(rootPath)) excludedLinks.add(previousPath.get(i));
+				final List<Link> spurPath = getShortestPath(outLinks_n , N , spurNode , destinationNode , excludedNodes , excludedLinks);
+				if (spurPath == null) continue;
+				List<Link> newPath = new ArrayList<Link> (rootPath);
+				newPath.addAll(spurPath);
+				if (pathsSeen.add(newPath)) candidatePaths.add(newPath);
+			}
+		}
+		return res;
+	}
+
+	/* Dijkstra's shortest path in km, not traversing the excluded nodes or links, or null if none exists */
+	private static List<Link> getShortestPath (List<List<Link>> outLinks_n , int N , Node originNode , Node destinationNode , boolean [] excludedNodes , Set<Link> excludedLinks)
+	{
+		double [] distance_n = new double [N]; Arrays.fill(distance_n , Double.MAX_VALUE);
+		Link [] previousLink_n = new Link [N];
+		boolean [] visited_n = new boolean [N];
+		distance_n [originNode.getIndex()] = 0;
+		while (true)
+		{
+			int current = -1;
+			for (int n = 0 ; n < N ; n ++)
+				if (!visited_n [n] && !excludedNodes [n] && distance_n [n] != Double.MAX_VALUE && (current == -1 || distance_n [n] < distance_n [current])) current = n;
+			if (current == -1) return null;
+			if (current == destinationNode.getIndex()) break;
+			visited_n [current] = true;
+			for (Link e : outLinks_n.get(current))
+			{
+				if (excludedLinks.contains(e)) continue;
+				final int n = e.getDestinationNode().getIndex();
+				if (excludedNodes [n] || visited_n [n]) continue;
+				if (distance_n [current] + e.getLengthInKm() < distance_n [n]) { distance_n [n] = distance_n [current] + e.getLengthInKm(); previousLink_n [n] = e; }
+			}
+		}
+		LinkedList<Link> res = new LinkedList<Link> ();
+		for (int n = destinationNode.getIndex() ; n != originNode.getIndex() ; n = previousLink_n [n].getOriginNode().getIndex()) res.addFirst(previousLink_n [n]);
+		return new ArrayList<Link> (res);
+	}
+
+	private static double getPropagationDelayInMs (List<Link> path)
+	{
+		double res = 0;
+		for (Link e : path) res += 1000 * e.getLengthInKm() / e.getPropagationSpeedInKmPerSecond();
+		return res;
+	}
+
+	private final static Object SOLVER_LOCK = new Object ();
+	private final static int CPX_PARAM_THREADS = 1067; /* CPLEX parameter identifier, passed by JOM to the solver */
+	private final static int XPRS_THREADS = 8278; /* XPRESS control identifier, passed by JOM to the solver */
+
+	/** Solves the problem with JOM, with the given solver, maximum time (non-positive means no limit) and maximum number of threads (0 means 
+	 * the solver default; passed to CPLEX and XPRESS, GLPK is single-threaded). Only the CPLEX solves, each one in its own environment, may run 
+	 * concurrently: the rest are run one at a time, since their native libraries are not known to be thread-safe. This way, several executions 
+	 * in the same JVM ({@link MCFSweepRunner}, the decomposition of {@link MCF_ILP_UPC_UPCT_Coop}) can safely run in parallel
+	 */
+	public static void solve (OptimizationProblem op , String solverName , String solverLibraryName , double maxSolverTimeInSeconds , int numThreads)
+	{
+		if (solverName.equalsIgnoreCase("cplex")) { solveNow(op , solverName , solverLibraryName , maxSolverTimeInSeconds , numThreads); return; }
+		synchronized (SOLVER_LOCK) { solveNow(op , solverName , solverLibraryName , maxSolverTimeInSeconds , numThreads); }
+	}
+
+	private static void solveNow (OptimizationProblem op , String solverName , String solverLibraryName , double maxSolverTimeInSeconds , int numThreads)
+	{
+		final int threadsParameter = solverName.equalsIgnoreCase("cplex")? CPX_PARAM_THREADS : solverName.equalsIgnoreCase("xpress")? XPRS_THREADS : -1;
+		if (numThreads > 0 && threadsParameter != -1)
+			op.solve(solverName, "solverLibraryName", solverLibraryName , "maxSolverTimeInSeconds" , maxSolverTimeInSeconds , "" + threadsParameter , numThreads);
+		else
+			op.solve(solverName, "solverLibraryName", solverLibraryName , "maxSolverTimeInSeconds" , maxSolverTimeInSeconds);
+	}
+
+	/** Appends a line to a results file. A header line with the names of the columns ("#" and the given header) is written before it if the 
+	 * file is new, or if the last header of the file is a different one (rows written with other columns). Executions running in parallel 
+	 * (e.g. in {@link MCFSweepRunner}) append their lines one at a time
+	 * @throws Net2PlanException if the file cannot be read or written
+	 */
+	public static synchronized void appendToResultsFile (File file , String header , String line)
+	{
+		final String headerLine = "# " + header;
+		try
+		{
+			String lastHeaderLine = null;
+			if (file.exists())
+			{
+				BufferedReader br = new BufferedReader (new FileReader (file));
+				try
+				{
+					for (String fileLine = br.readLine() ; fileLine != null ; fileLine = br.readLine())
+						if (fileLine.startsWith("#")) lastHeaderLine = fileLine;
+				} finally { br.close(); }
+			}
+			FileWriter fw = new FileWriter(file,true);
+			try
+			{
+				if (!headerLine.equals(lastHeaderLine)) fw.write(headerLine + "\r\n");
+				fw.write(line + "\r\n");
+			} finally { fw.close(); }
+		} catch (IOException e) { throw new Net2PlanException ("The results file " + file + " could not be written: " + e.getMessage()); }
+	}
+
+	/** Returns the sum of the current usages of the heap memory pools of the JVM (of the whole process) */
+	public static long getUsedHeapInBytes ()
+	{
+		long res = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP) res += pool.getUsage().getUsed();
+		return res;
+	}
+
+	/** Returns the sum of the peak usages of the heap memory pools of the JVM (of the whole process, since it started: the peaks are never reset) */
+	public static long getPeakHeapUsageInBytes ()
+	{
+		long res = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP) res += pool.getPeakUsage().getUsed();
+		return res;
+	}
+
+	/** Returns the bytes allocated so far by the calling thread, or -1 if the JVM does not measure them */
+	public static long getCurrentThreadAllocatedBytes ()
+	{
+		final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) return -1;
+		return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
 	public static String getMFCTranspondersXTAwareInfo (int C)
 	{
 		String transponders = "";
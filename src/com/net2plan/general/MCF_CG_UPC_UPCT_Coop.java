@@ -0,0 +1,407 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.jom.DoubleMatrixND;
+import com.jom.OptimizationProblem;
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.IAlgorithm;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.interfaces.networkDesign.Route;
+import com.net2plan.utils.InputParameter;
+import com.net2plan.utils.Triple;
+import com.net2plan.utils.Constants.RoutingType;
+import com.net2plan.libraries.TrafficMatrixGenerationModels;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.list.tdouble.DoubleArrayList;
+import cern.colt.list.tint.IntArrayList;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+
+/** Column generation version of the formulation in {@link MCF_ILP_UPC_UPCT_Coop}. The restricted master problem starts with one candidate
+ * (path and transponder type) per demand, and its linear relaxation is solved iteratively. In each iteration, the candidates of the k-shortest
+ * paths with a negative reduced cost (computed from the multipliers of the demand and slot-clashing constraints) are added. The paths of a 
+ * demand are only computed when some transponder type can have a negative reduced cost for it, and only up to the reach of those types. Then, 
+ * the integer problem is solved with the generated candidates. The lower bound is the Lagrangian bound of the linear relaxation with all the candidates
+ */
+public class MCF_CG_UPC_UPCT_Coop implements IAlgorithm
+{
+	final private InputParameter k = new InputParameter ("k", (int) 5 , "Maximum number of admissible paths per input-output node pair" , 1 , Integer.MAX_VALUE);
+	final private InputParameter numCores = new InputParameter ("numCores", "#select# 7 12 19" , "Number of cores per fiber");
+	final private InputParameter wdmLayerIndex = new InputParameter ("wdmLayerIndex", (int) 0 , "Index of the WDM layer (-1 means default layer)");
+	final private InputParameter solverLibraryName = new InputParameter ("solverLibraryName", "" , "The solver library full or relative path, to be used by JOM. Leave blank to use JOM default.");
+	final private InputParameter solverName = new InputParameter ("solverName", "#select# cplex glpk xpress ", "The solver name to be used by JOM. GLPK is free, XPRESS and CPLEX commercial. The linear relaxations need a solver returning the multipliers of the constraints");
+	final private InputParameter maxSolverTimeInSeconds = new InputParameter ("maxSolverTimeInSeconds", (double) -1 , "Maximum time granted to the solver to solve the integer problem with the generated candidates. If this time expires, the solver returns the best solution found so far (if a feasible solution is found)");
+	final private InputParameter numFrequencySlotsPerCore = new InputParameter ("numFrequencySlotsPerCore", (int) 120 , "Number of wavelengths per link" , 1, Integer.MAX_VALUE);
+	final private InputParameter maxPropagationDelayMs = new InputParameter ("maxPropagationDelayMs", (double) -1 , "Maximum allowed propagation time of a lighptath in miliseconds. If non-positive, no limit is assumed");
+	final private InputParameter ilpType = new InputParameter("ilpType", "#select# non-core-continuity-constraint aggregated-core-continuity-constraint", "Choose the type of the ILP exection. In the aggregated option, the cores are assigned to the lightpaths after solving");
+	final private InputParameter trafficFactor = new InputParameter("trafficFactor", (double) 1.0, "Factor of total carried traffic (It must be lower o equal than 1) ");
+	final private InputParameter scaleTraffic = new InputParameter("scaleTraffic", (boolean) true , "Option to scale the traffic using traffic factor ");
+	final private InputParameter maxNumIterations = new InputParameter ("maxNumIterations", (int) 50 , "Maximum number of column generation iterations" , 1 , Integer.MAX_VALUE);
+	final private InputParameter maxColumnsPerDemandAndIteration = new InputParameter ("maxColumnsPerDemandAndIteration", (int) 2 , "Maximum number of candidates added to the restricted master problem per demand in each iteration" , 1 , Integer.MAX_VALUE);
+	final private InputParameter unservedTrafficCostPerGbps = new InputParameter ("unservedTrafficCostPerGbps", (double) 1000 , "Cost per Gbps of the artificial variables that keep the restricted master problem feasible. It must not be lower than the cost per Gbps of any transponder type");
+	final private InputParameter maxCoreAssignmentSearchNodes = new InputParameter ("maxCoreAssignmentSearchNodes", (int) 1000000 , "Maximum number of nodes explored by the exact per-core assignment of the aggregated formulation. If exceeded (or no assignment exists), the integer problem with the generated candidates is solved again with one variable per core" , 1 , Integer.MAX_VALUE);
+
+	private final static double PRECISIONFACTOR = 1e-6;
+
+	/** The method called by Net2Plan to run the algorithm (when the user presses the "Execute" button)
+	 * @param netPlan The input network design. The developed algorithm should modify it: it is the way the new design is returned
+	 * @param algorithmParameters Pair name-value for the current value of the input parameters
+	 * @param net2planParameters Pair name-value for some general parameters of Net2Plan
+	 * @return
+	 */
+	@Override
+	public String executeAlgorithm(NetPlan netPlan, Map<String, String> algorithmParameters, Map<String, String> net2planParameters)
+	{
+		/* Initialize all InputParameter objects defined in this object (this uses Java reflection) */
+		InputParameter.initializeAllInputParameterFieldsOfObject(this, algorithmParameters);
+
+		final NetworkLayer wdmLayer = wdmLayerIndex.getInt () == -1? netPlan.getNetworkLayerDefault() : netPlan.getNetworkLayer(wdmLayerIndex.getInt ());
+
+		/* Basic checks */
+		final int N = netPlan.getNumberOfNodes();
+		final int E = netPlan.getNumberOfLinks(wdmLayer);
+		final int D = netPlan.getNumberOfDemands(wdmLayer);
+		final int C = Integer.parseInt(numCores.getString());
+		final int S = numFrequencySlotsPerCore.getInt();
+
+		if (N == 0 || E == 0 || D == 0 || S == 0 || C == 0) throw new Net2PlanException("This algorithm requires a topology with links, slots and a demand set");
+
+		/* Remove all routes in current netPlan object. Initialize link capacities and attributes, and demand offered traffic */
+		netPlan.removeAllMulticastTrees(wdmLayer);
+		netPlan.removeAllUnicastRoutingInformation(wdmLayer);
+		netPlan.setRoutingType(RoutingType.SOURCE_ROUTING , wdmLayer);
+
+		if(scaleTraffic.getBoolean())
+		{
+			if (trafficFactor.getDouble() > 1.0) throw new Net2PlanException("Traffic Factor must be lower o equal than 1.0");
+
+			DoubleMatrix2D newTrafficMatrix = TrafficMatrixGenerationModels.normalizationPattern_totalTraffic(netPlan.getMatrixNode2NodeOfferedTraffic(), trafficFactor.getDouble()*netPlan.getDemandTotalOfferedTraffic());
+			netPlan.setTrafficMatrix(newTrafficMatrix);
+		}
+
+		final boolean isNotCCC = ilpType.getString().equalsIgnoreCase("non-core-continuity-constraint");
+		final int maxLightpathsPerPathAndSlot = isNotCCC? 1 : C;
+
+		// Store transponder info
+		WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo(MCFUtils.getMFCTranspondersXTAwareInfo(C));
+		final int T = tpInfo.getNumTypes();
+		for (int t = 0; t < T ; t ++)
+			if (unservedTrafficCostPerGbps.getDouble() < tpInfo.getCost(t) / tpInfo.getLineRateGbps(t)) 
+				throw new Net2PlanException ("The unservedTrafficCostPerGbps (" + unservedTrafficCostPerGbps.getDouble() + ") must not be lower than the cost per Gbps of any transponder type (" + (tpInfo.getCost(t) / tpInfo.getLineRateGbps(t)) + " in type " + t + ")");
+
+		// The paths of each demand are computed when needed (see getPaths): the candidates of the formulation are generated from them
+		final int K = k.getInt();
+		final DoubleMatrix1D h_d = netPlan.getVectorDemandOfferedTraffic(wdmLayer);
+		List<List<List<Link>>> paths_d = new ArrayList<List<List<Link>>> (Collections.nCopies(D , (List<List<Link>>) null));
+		int [] pathsK_d = new int [D];
+		double [] pathsMaxLengthInKm_d = new double [D];
+
+		/* Initial restricted master problem: for each demand, the shortest path with the transponder of lowest cost per Gbps reaching it */
+		MCFCandidateLightpaths candidates = new MCFCandidateLightpaths (wdmLayer , D);
+		Set<Long> candidatesInMaster = new HashSet<Long> ();
+		for (Demand d : netPlan.getDemands(wdmLayer))
+		{
+			final List<List<Link>> paths = getPaths(netPlan , wdmLayer , d , 1 , tpInfo.getMaxOpticalReachKm() , paths_d , pathsK_d , pathsMaxLengthInKm_d);
+			final List<Link> shortestPath = paths.isEmpty()? null : paths.get(0);
+			int bestType = -1;
+			if (shortestPath != null)
+				for (int t = 0; t < T ; t ++)
+					if (MCFCandidateLightpaths.getLengthInKm(shortestPath) <= tpInfo.getOpticalReachKm(t))
+						if ((bestType == -1) || (tpInfo.getCost(t) / tpInfo.getLineRateGbps(t) < tpInfo.getCost(bestType) / tpInfo.getLineRateGbps(bestType))) bestType = t;
+			if (bestType == -1) throw new Net2PlanException ("There are no possible routes for a demand (" + d + "). The topology may be not connected enough, or the optical reach may be too small");
+			candidates.add(d , shortestPath , bestType , tpInfo);
+			candidatesInMaster.add(getCandidateKey(d , 0 , bestType , K , T));
+		}
+
+		/* Column generation with the linear relaxation */
+		double lowerBound = 0;
+		double lpCost = 0;
+		int iteration = 0;
+		boolean converged = false;
+		int numMultipliersOutOfSign = 0;
+		int numInconsistentBounds = 0;
+		while (iteration < maxNumIterations.getInt())
+		{
+			iteration ++;
+			OptimizationProblem op = createMasterProblem(false , false , candidates , maxLightpathsPerPathAndSlot , h_d , tpInfo , C , S , D , E);
+			MCFUtils.solve(op , solverName.getString() , solverLibraryName.getString() , -1 , 0);
+			if (!op.solutionIsOptimal()) throw new Net2PlanException("The linear relaxation of the restricted master problem was not solved to optimality");
+			lpCost = op.getOptimalCost();
+
+			/* Multipliers, as given by JOM (the sensitivity of the optimal cost to the right-hand side of the constraint): non-negative for the 
+			 * demand constraints (>=), and non-positive for the slot clashing constraints (<=), whose prices are their opposite. The ones out of 
+			 * this sign, or with a demand price above the cost of the unserved traffic, are counted and projected (the Lagrangian bound stays valid) */
+			DoubleMatrix1D pi_d = op.getMultipliersOfConstraint("demandConstraints").elements().copy();
+			DoubleMatrix2D mu_es = op.getMultipliersOfConstraint("clashingConstraints").elements().copy().reshape(S , E).viewDice(); /* row e S + s of the constraint */
+			for (int d = 0; d < D ; d ++)
+			{
+				final double pi = pi_d.get(d);
+				if (pi < -PRECISIONFACTOR || pi > unservedTrafficCostPerGbps.getDouble() + PRECISIONFACTOR) numMultipliersOutOfSign ++;
+				pi_d.set(d , Math.min(Math.max(pi , 0) , unservedTrafficCostPerGbps.getDouble()));
+			}
+			for (int e = 0; e < E ; e ++) for (int s = 0; s < S ; s ++)
+			{
+				final double mu = -mu_es.get(e , s);
+				if (mu < -PRECISIONFACTOR) numMultipliersOutOfSign ++;
+				mu_es.set(e , s , Math.max(mu , 0));
+			}
+
+			/* Pricing. The Lagrangian bound is sum_d pi_d h_d - C sum_es mu_es + sum of the negative reduced costs of all the candidates (at their upper bound) */
+			double lagrangianBound = pi_d.zDotProduct(h_d) - C * mu_es.zSum();
+			int numColumnsAdded = 0;
+			for (Demand d : netPlan.getDemands(wdmLayer))
+			{
+				/* A candidate costs at least its transponder minus the demand price: only the types where this is negative need paths */
+				double maxUsefulReachKm = -1;
+				for (int t = 0; t < T ; t ++)
+					if (tpInfo.getCost(t) - pi_d.get(d.getIndex()) * tpInfo.getLineRateGbps(t) < 0) maxUsefulReachKm = Math.max(maxUsefulReachKm , tpInfo.getOpticalReachKm(t));
+				if (maxUsefulReachKm < 0) continue;
+				List<Triple<Double,Integer,Integer>> negativeColumns = new ArrayList<Triple<Double,Integer,Integer>> ();
+				final List<List<Link>> paths = getPaths(netPlan , wdmLayer , d , K , maxUsefulReachKm , paths_d , pathsK_d , pathsMaxLengthInKm_d);
+				for (int pathIndex = 0 ; pathIndex < paths.size() ; pathIndex ++)
+				{
+					final List<Link> path = paths.get(pathIndex);
+					final double lengthKm = MCFCandidateLightpaths.getLengthInKm(path);
+					double [] price_s = new double [S];
+					for (Link e : path) for (int s = 0; s < S ; s ++) price_s [s] += mu_es.get(e.getIndex() , s);
+					for (int t = 0; t < T ; t ++)
+					{
+						if (lengthKm > tpInfo.getOpticalReachKm(t)) continue;
+						final int numSlots = tpInfo.getNumSlots(t);
+						final double fixedReducedCost = tpInfo.getCost(t) - pi_d.get(d.getIndex()) * tpInfo.getLineRateGbps(t);
+						double windowPrice = 0; for (int s = 0; s < numSlots - 1 ; s ++) windowPrice += price_s [s];
+						double bestReducedCost = Double.MAX_VALUE;
+						for (int s = 0; s < S + 1 - numSlots ; s ++)
+						{
+							windowPrice += price_s [s + numSlots - 1];
+							final double reducedCost = fixedReducedCost + windowPrice;
+							if (reducedCost < 0) lagrangianBound += maxLightpathsPerPathAndSlot * reducedCost;
+							bestReducedCost = Math.min(bestReducedCost , reducedCost);
+							windowPrice -= price_s [s];
+						}
+						if (bestReducedCost < -PRECISIONFACTOR && !candidatesInMaster.contains(getCandidateKey(d , pathIndex , t , K , T)))
+							negativeColumns.add(Triple.of(bestReducedCost , pathIndex , t));
+					}
+				}
+				Collections.sort(negativeColumns , new Comparator<Triple<Double,Integer,Integer>> ()
+				{
+					public int compare(Triple<Double,Integer,Integer> o1, Triple<Double,Integer,Integer> o2) { return Double.compare(o1.getFirst() , o2.getFirst()); }
+				});
+				for (int cont = 0 ; cont < Math.min(negativeColumns.size() , maxColumnsPerDemandAndIteration.getInt()) ; cont ++)
+				{
+					final int pathIndex = negativeColumns.get(cont).getSecond();
+					final int t = negativeColumns.get(cont).getThird();
+					candidates.add(d , paths.get(pathIndex) , t , tpInfo);
+					candidatesInMaster.add(getCandidateKey(d , pathIndex , t , K , T));
+					numColumnsAdded ++;
+				}
+			}
+			/* The Lagrangian bound cannot exceed the cost of the restricted master: if it does, the multipliers are not the duals of the LP */
+			if (lagrangianBound <= lpCost + PRECISIONFACTOR * Math.max(1 , Math.abs(lpCost))) lowerBound = Math.max(lowerBound , lagrangianBound); else numInconsistentBounds ++;
+			if (numColumnsAdded == 0) { converged = true; lowerBound = Math.max(lowerBound , lpCost); break; }
+		}
+
+		/* Integer problem with the generated candidates */
+		final int P = candidates.getNumberOfCandidates();
+		OptimizationProblem op = createMasterProblem(true , false , candidates , maxLightpathsPerPathAndSlot , h_d , tpInfo , C , S , D , E);
+		MCFUtils.solve(op , solverName.getString() , solverLibraryName.getString() , maxSolverTimeInSeconds.getDouble() , 0);
+
+		/* If a feasible solution was not found, quit (this may also happen if after the maximum solver time no feasible solution is found) */
+		if (!op.solutionIsFeasible()) throw new Net2PlanException("A feasible solution was not found");
+		if (op.getPrimalSolution("y_d").elements().zSum() > PRECISIONFACTOR) throw new Net2PlanException("A feasible solution was not found with the generated candidates. Try more iterations, or a higher k");
+
+		List<DoubleMatrix2D> x_psc = Collections.singletonList(op.getPrimalSolution("x_ps").elements().copy().reshape(S , P).viewDice()); /* element p S + s of the variables */
+
+		/* Lightpaths of the solution, and their cores in the aggregated formulation. If the aggregated solution cannot be split into cores, the
+		 * integer problem is solved again with one variable per core and the generated candidates (as the full core-continuity formulation) */
+		List<List<Link>> seqLinks_l = new ArrayList<List<Link>> ();
+		IntArrayList path_l = new IntArrayList ();
+		IntArrayList initialSlot_l = new IntArrayList ();
+		IntArrayList numSlots_l = new IntArrayList ();
+		IntArrayList core_l = new IntArrayList ();
+		addLightpaths(candidates , x_psc , seqLinks_l , path_l , initialSlot_l , numSlots_l , core_l);
+		boolean isPerCoreFallback = false;
+		final boolean [] isSearchLimitReached = new boolean [1];
+		if (!isNotCCC)
+		{
+			initialSlot_l.trimToSize(); numSlots_l.trimToSize();
+			final int [] aggregatedCore_l = MCFUtils.assignFiberCores(seqLinks_l , initialSlot_l.elements() , numSlots_l.elements() , C , maxCoreAssignmentSearchNodes.getInt() , isSearchLimitReached);
+			if (aggregatedCore_l != null)
+				for (int l = 0 ; l < aggregatedCore_l.length ; l ++) core_l.set(l , aggregatedCore_l [l]);
+			else
+			{
+				isPerCoreFallback = true;
+				op = createMasterProblem(true , true , candidates , 1 , h_d , tpInfo , C , S , D , E);
+				MCFUtils.solve(op , solverName.getString() , solverLibraryName.getString() , maxSolverTimeInSeconds.getDouble() , 0);
+				if (!op.solutionIsFeasible()) throw new Net2PlanException("The aggregated solution could not be assigned to the cores, and a feasible solution of the per-core problem was not found");
+				if (op.getPrimalSolution("y_d").elements().zSum() > PRECISIONFACTOR) throw new Net2PlanException("The aggregated solution could not be assigned to the cores, and a feasible solution of the per-core problem was not found with the generated candidates. Try more iterations, or a higher k");
+				x_psc = new ArrayList<DoubleMatrix2D> ();
+				for (int c = 0 ; c < C ; c ++) x_psc.add(op.getPrimalSolution("x_ps" + Integer.toString(c)).elements().copy().reshape(S , P).viewDice());
+				seqLinks_l.clear(); path_l.clear(); initialSlot_l.clear(); numSlots_l.clear(); core_l.clear();
+				addLightpaths(candidates , x_psc , seqLinks_l , path_l , initialSlot_l , numSlots_l , core_l);
+			}
+		}
+		double ipCost = 0; for (int l = 0 ; l < path_l.size() ; l ++) ipCost += candidates.cost_p.get(path_l.get(l));
+		final double gap = ipCost == 0? 0 : (ipCost - lowerBound) / ipCost;
+
+		/* Create the lightpaths according to the solutions given */
+		WDMUtils.setFibersNumFrequencySlots(netPlan , numFrequencySlotsPerCore.getInt() , wdmLayer);
+		for (int l = 0 ; l < path_l.size() ; l ++)
+		{
+			final int p = path_l.get(l);
+			Route r = WDMUtils.addLightpath(candidates.demand_p.get(p) , new WDMUtils.RSA(seqLinks_l.get(l) , initialSlot_l.get(l) , numSlots_l.get(l)), candidates.lineRate_p.get(p));
+			if (!isNotCCC) r.setAttribute("fiberCoreID", Integer.toString(core_l.get(l)));
+		}
+		if (!isNotCCC)
+			for (Demand d : netPlan.getDemands(wdmLayer)) MCFUtils.setFiberCoreIDsAttribute(d);
+
+		// Check Spectrum Clashing
+		if (!isNotCCC) MCFUtils.checkResourceAllocationClashingPerCore(netPlan, C, wdmLayer);
+
+		// Store results
+		final double throughput = netPlan.getDemandTotalCarriedTraffic();
+		final double totalFSOccupied = netPlan.getVectorLinkTotalOccupiedCapacity().zSum();
+		final double alpha = trafficFactor.getDouble();
+		final double totalOfferedTraffic = netPlan.getDemandTotalOfferedTraffic();
+
+		int numPaths = 0; for (List<List<Link>> paths : paths_d) if (paths != null) numPaths += paths.size();
+
+		File file = new File(netPlan.getNetworkName()+ilpType.getString()+"-cg.txt");
+		MCFUtils.appendToResultsFile(file , "C throughput totalFSOccupied totalOfferedTraffic alpha candidates iterations gap" ,
+				Integer.toString(C) + " " + throughput + " " + totalFSOccupied+ " " + totalOfferedTraffic + " " + alpha + " " + P + " " + iteration + " " + gap);
+
+		return "Offered Traffic: " + totalOfferedTraffic +" - Throughut (Gbps): " + throughput + " - Total FSOccupied : " + totalFSOccupied + " - Alpha : " + alpha +
+				 " - Paths computed : " + numPaths + " - Candidates generated : " + P + " - Iterations : " + iteration + (converged? "" : " (not converged)") + (isPerCoreFallback? " - Per-core problem solved (aggregated solution not assignable to the cores: " + (isSearchLimitReached [0]? "assignment not found within " + maxCoreAssignmentSearchNodes.getInt() + " search nodes" : "no assignment exists") + ")" : "") + " - Cost : " + ipCost + " - Lower bound : " + lowerBound + " - Gap : " + gap +
+				(numMultipliersOutOfSign == 0? "" : " - Multipliers out of sign (projected) : " + numMultipliersOutOfSign) + (numInconsistentBounds == 0? "" : " - Lagrangian bounds not used (inconsistent with the LP cost) : " + numInconsistentBounds);
+	}
+
+	/** Returns a description message that will be shown in the graphical user interface
+	 */
+	@Override
+	public String getDescription()
+	{
+		return "Column generation version of the formulation-based RSMA algorithm: Non Core Continuity Constraint, Aggregated Core Continuity Constraint";
+	}
+
+
+	/** Returns the list of input parameters of the algorithm. For each parameter, you should return a Triple with its name, default value and a description
+	 * @return
+	 */
+	@Override
+	public List<Triple<String, String, String>> getParameters()
+	{
+		return InputParameter.getInformationAllInputParameterFieldsOfObject(this);
+	}
+
+	/* Restricted master problem with the current candidates. The variables y_d (unserved traffic of demand d) keep it always feasible. If 
+	 * oneCopyPerCore is true, there is one vector of variables per core (x_ps0, x_ps1...), with up to one lightpath per link, slot and core */
+	private OptimizationProblem createMasterProblem (boolean isInteger , boolean oneCopyPerCore , MCFCandidateLightpaths candidates , int maxLightpathsPerPathAndSlot , DoubleMatrix1D h_d ,
+			WDMUtils.TransponderTypesInfo tpInfo , int C , int S , int D , int E)
+	{
+		final int P = candidates.getNumberOfCandidates();
+
+		double [][] maxAssignment_q = new double [1][P*S];
+		final double [][] feasibleAssignment_ps = candidates.getFeasibleInitialSlots(S);
+		for (int p = 0; p < P; p++)
+			for (int s = 0; s < S ; s ++)
+				maxAssignment_q [0][p*S + s] = maxLightpathsPerPathAndSlot * feasibleAssignment_ps [p][s];
+
+		/* Variables in the triplet assembly of MCF_ILP_UPC_UPCT_Coop: element p S + s for the candidate p and initial slot s */
+		OptimizationProblem op = new OptimizationProblem();
+		for (int c = 0 ; c < (oneCopyPerCore? C : 1) ; c ++)
+			op.addDecisionVariable(oneCopyPerCore? "x_ps" + Integer.toString(c) : "x_ps", isInteger, new int[] {1, P*S}, new DoubleMatrixND (new int [] {1,P*S}) , new DoubleMatrixND (maxAssignment_q));
+		op.addDecisionVariable("y_d", false, new int[] {1, D}, 0 , Double.MAX_VALUE);
+
+		op.setInputParameter("C", C);
+		op.setInputParameter("M", unservedTrafficCostPerGbps.getDouble());
+		op.setInputParameter("h_d", h_d, "row");
+		op.setInputParameter("c_q", candidates.getVectorCandidateSlotCost(S), "row");
+		op.setInputParameter("A_dq", candidates.getMatrixDemand2CandidateSlot(D , S));
+		op.setInputParameter("A_esq", candidates.getMatrixLinkSlot2CandidateSlot(E , S));
+
+		if (!oneCopyPerCore)
+		{
+			op.setObjectiveFunction("minimize", "c_q * x_ps' + M * sum(y_d)");
+			op.addConstraint("A_dq * x_ps' + y_d' >= h_d'" , "demandConstraints");
+			op.addConstraint("A_esq * x_ps' <= C" , "clashingConstraints"); /* sum_{p in P_e, w} x_pw <= C, for all e,w */
+			return op;
+		}
+		String objectiveFunction = "";
+		String demandConstraint = "";
+		for (int c = 0 ; c < C ; c ++)
+		{
+			objectiveFunction += "c_q * x_ps" + Integer.toString(c) + "' + ";
+			demandConstraint += "A_dq * x_ps" + Integer.toString(c) + "' + ";
+			op.addConstraint("A_esq * x_ps" + Integer.toString(c) + "' <= 1");
+		}
+		op.setObjectiveFunction("minimize", objectiveFunction + "M * sum(y_d)");
+		op.addConstraint(demandConstraint + "y_d' >= h_d'" , "demandConstraints");
+		return op;
+	}
+
+	/* Adds the lightpaths of the solution (one matrix x_ps, or one per core) to the lists: round(x) lightpaths per variable, with its core (0 with a single matrix) */
+	private static void addLightpaths (MCFCandidateLightpaths candidates , List<DoubleMatrix2D> x_psc , List<List<Link>> seqLinks_l , IntArrayList path_l , IntArrayList initialSlot_l , 
+			IntArrayList numSlots_l , IntArrayList core_l)
+	{
+		IntArrayList ps_rows = new IntArrayList (); IntArrayList ps_columns = new IntArrayList (); DoubleArrayList ps_vals = new DoubleArrayList ();
+		for (int c = 0 ; c < x_psc.size() ; c ++)
+		{
+			x_psc.get(c).getNonZeros(ps_rows , ps_columns , ps_vals);
+			for (int cont = 0 ; cont < ps_rows.size() ; cont ++)
+			{
+				final int p = ps_rows.get(cont);
+				for (int n = 0 ; n < Math.round(ps_vals.get(cont)) ; n ++)
+				{
+					seqLinks_l.add(candidates.seqLinks_p.get(p));
+					path_l.add(p);
+					initialSlot_l.add(ps_columns.get(cont));
+					numSlots_l.add(candidates.numSlots_p.get(p));
+					core_l.add(c);
+				}
+			}
+		}
+	}
+
+	/* The paths of demand d: the first K loopless shortest paths not longer than maxLengthInKm (nor the maximum propagation delay). They are 
+	 * computed once, and again only if more paths or longer ones are needed: the new list starts with the previous one, so the path indexes stay */
+	private List<List<Link>> getPaths (NetPlan netPlan , NetworkLayer wdmLayer , Demand d , int K , double maxLengthInKm , List<List<List<Link>>> paths_d , int [] pathsK_d , double [] pathsMaxLengthInKm_d)
+	{
+		final int index = d.getIndex();
+		if (paths_d.get(index) != null && pathsK_d [index] >= K && pathsMaxLengthInKm_d [index] >= maxLengthInKm) return paths_d.get(index);
+		pathsK_d [index] = Math.max(pathsK_d [index] , K);
+		pathsMaxLengthInKm_d [index] = Math.max(pathsMaxLengthInKm_d [index] , maxLengthInKm);
+		paths_d.set(index , MCFUtils.getKLooplessShortestPaths(netPlan.getLinks(wdmLayer) , netPlan.getNumberOfNodes() , d.getIngressNode() , d.getEgressNode() , pathsK_d [index] , pathsMaxLengthInKm_d [index] , maxPropagationDelayMs.getDouble()));
+		return paths_d.get(index);
+	}
+
+	/* Identifies the candidate of demand d, in its pathIndex-th shortest path, with transponder type t */
+	private static long getCandidateKey (Demand d , int pathIndex , int t , int K , int T)
+	{
+		return (((long) d.getIndex()) * K + pathIndex) * T + t;
+	}
+}
@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.IAlgorithm;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.interfaces.networkDesign.Route;
+import com.net2plan.utils.InputParameter;
+import com.net2plan.utils.Triple;
+import com.net2plan.utils.Constants.RoutingType;
+import com.net2plan.libraries.TrafficMatrixGenerationModels;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+
+/** Heuristic routing, spectrum and core assignment (RSMA), with the same inputs and outputs as {@link MCF_ILP_UPC_UPCT_Coop}. The demands are
+ * processed one by one, in the selected order. The traffic of each demand is carried by lightpaths of the transponder type with the lowest cost
+ * per carried Gbps, in the shortest of the k paths within its reach, and the core and initial slot given by the core assignment policy
+ * (first-fit in the spectrum of each core). The lightpaths always fulfill the core continuity constraint
+ */
+public class MCF_Heuristic_UPC_UPCT_Coop implements IAlgorithm
+{
+	final private InputParameter k = new InputParameter ("k", (int) 5 , "Maximum number of admissible paths per input-output node pair" , 1 , Integer.MAX_VALUE);
+	final private InputParameter numCores = new InputParameter ("numCores", "#select# 7 12 19" , "Number of cores per fiber");
+	final private InputParameter wdmLayerIndex = new InputParameter ("wdmLayerIndex", (int) 0 , "Index of the WDM layer (-1 means default layer)");
+	final private InputParameter numFrequencySlotsPerCore = new InputParameter ("numFrequencySlotsPerCore", (int) 120 , "Number of wavelengths per link" , 1, Integer.MAX_VALUE);
+	final private InputParameter maxPropagationDelayMs = new InputParameter ("maxPropagationDelayMs", (double) -1 , "Maximum allowed propagation time of a lighptath in miliseconds. If non-positive, no limit is assumed");
+	final private InputParameter trafficFactor = new InputParameter("trafficFactor", (double) 1.0, "Factor of total carried traffic (It must be lower o equal than 1) ");
+	final private InputParameter scaleTraffic = new InputParameter("scaleTraffic", (boolean) true , "Option to scale the traffic using traffic factor ");
+	final private InputParameter demandOrdering = new InputParameter ("demandOrdering", "#select# highest-traffic-first longest-path-first input-order random" , "Order in which the demands are processed. In longest-path-first, the length of the shortest path of each demand is used");
+	final private InputParameter coreAssignment = new InputParameter ("coreAssignment", "#select# first-fit most-used" , "Order in which the cores are tried for each lightpath: by core index (first-fit), or from the core with more occupied slots to the one with less (most-used). In each core, the lowest available initial slot is used");
+	final private InputParameter randomSeed = new InputParameter ("randomSeed", (long) 1 , "Seed of the random number generator, used in the random demand ordering");
+	final private InputParameter crosstalkModel = new InputParameter ("crosstalkModel", "#select# worst-case core-adjacency" , "In worst-case, the reach of each transponder type is the one in the table, computed for all the adjacent cores occupied. In core-adjacency, the inter-core crosstalk of each lightpath depends on the adjacent cores actually occupied in its slots (see MCFCrosstalkModel): a lightpath can be up to the maximum reach (see maxReachFactor), if it and its adjacent lightpaths stay within their crosstalk budgets");
+	final private InputParameter maxReachFactor = new InputParameter ("maxReachFactor", (double) 2 , "In core-adjacency, maximum reach of each transponder type (limited by other impairments than the crosstalk, e.g. ASE noise), as a factor of its reach in the table. It is capped by the reach with one adjacent core occupied. With 7 cores, 2 is the worst-case reach of the outer cores (3 of 6 adjacent cores)" , 1 , Double.MAX_VALUE);
+	final private InputParameter provisioningMode = new InputParameter ("provisioningMode", "#select# full incremental" , "In full, all the routes are removed and all the demands are allocated. In incremental, the routes of the input design (and their cores and slots) are kept, and only the offered traffic not carried yet (new or increased demands) is allocated in the free resources. The traffic is not scaled");
+
+	private final static double PRECISIONFACTOR = 1e-3;
+
+	/** The method called by Net2Plan to run the algorithm (when the user presses the "Execute" button)
+	 * @param netPlan The input network design. The developed algorithm should modify it: it is the way the new design is returned
+	 * @param algorithmParameters Pair name-value for the current value of the input parameters
+	 * @param net2planParameters Pair name-value for some general parameters of Net2Plan
+	 * @return
+	 */
+	@Override
+	public String executeAlgorithm(NetPlan netPlan, Map<String, String> algorithmParameters, Map<String, String> net2planParameters)
+	{
+		/* Initialize all InputParameter objects defined in this object (this uses Java reflection) */
+		InputParameter.initializeAllInputParameterFieldsOfObject(this, algorithmParameters);
+
+		final NetworkLayer wdmLayer = wdmLayerIndex.getInt () == -1? netPlan.getNetworkLayerDefault() : netPlan.getNetworkLayer(wdmLayerIndex.getInt ());
+
+		/* Basic checks */
+		final int N = netPlan.getNumberOfNodes();
+		final int E = netPlan.getNumberOfLinks(wdmLayer);
+		final int D = netPlan.getNumberOfDemands(wdmLayer);
+		final int C = Integer.parseInt(numCores.getString());
+		final int S = numFrequencySlotsPerCore.getInt();
+
+		if (N == 0 || E == 0 || D == 0 || S == 0 || C == 0) throw new Net2PlanException("This algorithm requires a topology with links, slots and a demand set");
+
+		final long initTime = System.nanoTime();
+
+		/* Remove all routes in current netPlan object. Initialize link capacities and attributes, and demand offered traffic */
+		final boolean isIncremental = provisioningMode.getString().equalsIgnoreCase("incremental");
+		if (!isIncremental)
+		{
+			netPlan.removeAllMulticastTrees(wdmLayer);
+			netPlan.removeAllUnicastRoutingInformation(wdmLayer);
+			netPlan.setRoutingType(RoutingType.SOURCE_ROUTING , wdmLayer);
+		}
+
+		if(scaleTraffic.getBoolean() && !isIncremental)
+		{
+			if (trafficFactor.getDouble() > 1.0) throw new Net2PlanException("Traffic Factor must be lower o equal than 1.0");
+
+			DoubleMatrix2D newTrafficMatrix = TrafficMatrixGenerationModels.normalizationPattern_totalTraffic(netPlan.getMatrixNode2NodeOfferedTraffic(), trafficFactor.getDouble()*netPlan.getDemandTotalOfferedTraffic());
+			netPlan.setTrafficMatrix(newTrafficMatrix);
+		}
+
+		// Store transponder info. With the core adjacency crosstalk model, the reach is the table one scaled by maxReachFactor
+		final String transponderTypesInfo = MCFUtils.getMFCTranspondersXTAwareInfo(C);
+		final MCFCrosstalkModel xtModel = crosstalkModel.getString().equalsIgnoreCase("core-adjacency")? new MCFCrosstalkModel (C , transponderTypesInfo) : null;
+		WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo(xtModel == null? transponderTypesInfo : xtModel.getTransponderTypesInfoWithMaxReach(maxReachFactor.getDouble()));
+
+		// Compute the candidate path list
+		final Map<Demand,List<List<Link>>> cpl = netPlan.computeUnicastCandidatePathList(wdmLayer ,
+				netPlan.getVectorLinkLengthInKm(wdmLayer).toArray(), "K" , "" + k.getInt() , "maxLengthInKm" , ""+tpInfo.getMaxOpticalReachKm(), "maxPropDelayInMs" , "" + maxPropagationDelayMs.getDouble());
+
+		/* Allocate the demands in the selected order */
+		allocateDemands(netPlan , wdmLayer , cpl , tpInfo , C , S , demandOrdering.getString() , coreAssignment.getString() , randomSeed.getLong() , isIncremental , xtModel);
+		final double executionTimeInMs = (System.nanoTime() - initTime) / 1e6;
+
+		// Check Spectrum Clashing
+		MCFUtils.checkResourceAllocationClashingPerCore(netPlan, C, wdmLayer);
+
+		// Store results
+		final double throughput = netPlan.getDemandTotalCarriedTraffic();
+		final double totalFSOccupied = netPlan.getVectorLinkTotalOccupiedCapacity().zSum();
+		final double alpha = trafficFactor.getDouble();
+		final double totalOfferedTraffic = netPlan.getDemandTotalOfferedTraffic();
+
+		final double blockedTraffic = totalOfferedTraffic - throughput;
+
+		File file = new File(netPlan.getNetworkName()+"heuristic-"+coreAssignment.getString()+".txt");
+		MCFUtils.appendToResultsFile(file , "C throughput totalFSOccupied totalOfferedTraffic alpha blockedTraffic executionTimeMs" ,
+				Integer.toString(C) + " " + throughput + " " + totalFSOccupied+ " " + totalOfferedTraffic + " " + alpha + " " + blockedTraffic + " " + executionTimeInMs);
+
+		return "Offered Traffic: " + totalOfferedTraffic +" - Throughut (Gbps): " + throughput + " - Total FSOccupied : " + totalFSOccupied + " - Alpha : " + alpha +
+				" - Blocked traffic (Gbps) : " + blockedTraffic + " - Execution time (ms) : " + executionTimeInMs; // this is the message that will be shown in the screen at the end of the algorithm
+	}
+
+	/** Returns a description message that will be shown in the graphical user interface
+	 */
+	@Override
+	public String getDescription()
+	{
+		return "Heuristic RSMA algorithm (first-fit or most-used core assignment, first-fit spectrum assignment). It can be used as a fast alternative, or to obtain initial solutions, of the formulation-based RSMA algorithm";
+	}
+
+
+	/** Returns the list of input parameters of the algorithm. For each parameter, you should return a Triple with its name, default value and a description
+	 * @return
+	 */
+	@Override
+	public List<Triple<String, String, String>> getParameters()
+	{
+		return InputParameter.getInformationAllInputParameterFieldsOfObject(this);
+	}
+
+	/** Allocates the demands of the layer, in the given order, creating their lightpaths (the layer should have no routes). The fibers are set to 
+	 * S frequency slots
+	 * @param netPlan the design
+	 * @param wdmLayer the WDM layer
+	 * @param cpl the candidate path list, paths of each demand sorted by increasing length
+	 * @param tpInfo the transponder types
+	 * @param C number of cores per fiber
+	 * @param S number of frequency slots per core
+	 * @param demandOrdering demand ordering policy
+	 * @param coreAssignmentPolicy core assignment policy
+	 * @param seed seed of the random demand ordering
+	 * @return the spectrum occupancy of the lightpaths created
+	 */
+	public static MCFSpectrumOccupancy allocateDemands (NetPlan netPlan , NetworkLayer wdmLayer , Map<Demand,List<List<Link>>> cpl , WDMUtils.TransponderTypesInfo tpInfo , 
+			int C , int S , String demandOrdering , String coreAssignmentPolicy , long seed)
+	{
+		return allocateDemands(netPlan , wdmLayer , cpl , tpInfo , C , S , demandOrdering , coreAssignmentPolicy , seed , false , null);
+	}
+
+	/** As {@link #allocateDemands(NetPlan, NetworkLayer, Map, WDMUtils.TransponderTypesInfo, int, int, String, String, long)}, but if keepExistingRoutes
+	 * is true, the routes of the layer are kept (in the core of their fiberCoreID attribute), and only the offered traffic of each demand not 
+	 * carried yet is allocated, in the resources they do not use. If xtModel is not null, each lightpath is placed only where it and its adjacent 
+	 * lightpaths stay within their crosstalk budgets (tpInfo should have the maximum reach of the model)
+	 * @return the spectrum occupancy of the existing and the new lightpaths
+	 */
+	public static MCFSpectrumOccupancy allocateDemands (NetPlan netPlan , NetworkLayer wdmLayer , Map<Demand,List<List<Link>>> cpl , WDMUtils.TransponderTypesInfo tpInfo , 
+			int C , int S , String demandOrdering , String coreAssignmentPolicy , long seed , boolean keepExistingRoutes , MCFCrosstalkModel xtModel)
+	{
+		WDMUtils.setFibersNumFrequencySlots(netPlan , S , wdmLayer);
+		final int E = netPlan.getNumberOfLinks(wdmLayer);
+		final MCFLightpaths existingLightpaths = keepExistingRoutes? MCFLightpaths.readFromRoutes(netPlan , wdmLayer) : new MCFLightpaths ();
+		MCFSpectrumOccupancy occupancy = existingLightpaths.getSpectrumOccupancy(E , C , S);
+		MCFCrosstalkOccupancy crosstalk = xtModel == null? null : new MCFCrosstalkOccupancy (xtModel , E , S);
+		if (crosstalk != null)
+			for (int l = 0 ; l < existingLightpaths.getNumberOfLightpaths() ; l ++)
+				crosstalk.allocateExisting(existingLightpaths.seqLinks_l.get(l) , existingLightpaths.core_l.get(l) , existingLightpaths.initialSlot_l.get(l) , existingLightpaths.numSlots_l.get(l) , 
+						getCrosstalkBudget(xtModel , tpInfo , existingLightpaths.lineRate_l.get(l) , existingLightpaths.numSlots_l.get(l)));
+		List<Demand> demands = new ArrayList<Demand> ();
+		for (Demand d : netPlan.getDemands(wdmLayer))
+			if (!keepExistingRoutes || d.getOfferedTraffic() - d.getCarriedTraffic() > PRECISIONFACTOR) demands.add(d);
+		for (Demand d : getOrderedDemands(demands , cpl , demandOrdering , seed))
+		{
+			double remainingTraffic = d.getOfferedTraffic() - (keepExistingRoutes? d.getCarriedTraffic() : 0);
+			while (remainingTraffic > PRECISIONFACTOR)
+			{
+				final Route r = allocateLightpath(d , remainingTraffic , cpl.get(d) , tpInfo , occupancy , crosstalk , coreAssignmentPolicy);
+				if (r == null) break; /* no resources: the rest of the traffic is blocked */
+				remainingTraffic -= r.getCarriedTraffic();
+			}
+			MCFUtils.setFiberCoreIDsAttribute(d);
+		}
+		return occupancy;
+	}
+
+	/** Creates one lightpath for the demand, for up to remainingTraffic Gbps, and allocates its resources. The transponder types are tried from the
+	 * lowest to the highest cost per carried Gbps (and the lowest number of slots in case of tie), the paths from the shortest to the longest within
+	 * the reach, and the cores in the order of the core assignment policy. If crosstalk is not null, the lowest initial slot within the crosstalk
+	 * budgets is used
+	 * @return the lightpath, with the attribute fiberCoreID, or null if there are no resources
+	 */
+	static Route allocateLightpath (Demand d , double remainingTraffic , List<List<Link>> paths , WDMUtils.TransponderTypesInfo tpInfo , MCFSpectrumOccupancy occupancy , 
+			MCFCrosstalkOccupancy crosstalk , String coreAssignmentPolicy)
+	{
+		final int [] orderedCores = getOrderedCores(occupancy , coreAssignmentPolicy);
+		for (int t : getOrderedTransponderTypes(tpInfo , remainingTraffic))
+		{
+			final int numSlots = tpInfo.getNumSlots(t);
+			for (List<Link> path : paths)
+			{
+				if (MCFCandidateLightpaths.getLengthInKm(path) > tpInfo.getOpticalReachKm(t)) break;
+				for (int c : orderedCores)
+				{
+					int s = occupancy.getFirstFitInitialSlot(path , c , numSlots);
+					while (s != -1 && crosstalk != null && !crosstalk.isFeasible(path , c , s , numSlots , t))
+						s = occupancy.getFirstFitInitialSlot(path , c , numSlots , s + 1);
+					if (s == -1) continue;
+					occupancy.allocate(path , c , s , numSlots);
+					if (crosstalk != null) crosstalk.allocate(path , c , s , numSlots , t);
+					Route r = WDMUtils.addLightpath(d , new WDMUtils.RSA(path , s , numSlots), tpInfo.getLineRateGbps(t));
+					r.setAttribute("fiberCoreID", Integer.toString(c));
+					return r;
+				}
+			}
+		}
+		return null;
+	}
+
+	/* Crosstalk budget of an existing lightpath: the one of the first transponder type with its line rate and number of slots, or no limit if there is none */
+	private static double getCrosstalkBudget (MCFCrosstalkModel xtModel , WDMUtils.TransponderTypesInfo tpInfo , double lineRate , int numSlots)
+	{
+		for (int t = 0 ; t < tpInfo.getNumTypes() ; t ++)
+			if (tpInfo.getLineRateGbps(t) == lineRate && tpInfo.getNumSlots(t) == numSlots) return xtModel.getCrosstalkBudget(t);
+		return Double.MAX_VALUE;
+	}
+
+	/* Transponder types sorted by increasing cost per carried Gbps, when carrying up to remainingTraffic */
+	private static List<Integer> getOrderedTransponderTypes (final WDMUtils.TransponderTypesInfo tpInfo , final double remainingTraffic)
+	{
+		List<Integer> res = new ArrayList<Integer> ();
+		for (int t = 0; t < tpInfo.getNumTypes() ; t ++) res.add(t);
+		Collections.sort(res , new Comparator<Integer> ()
+		{
+			public int compare(Integer t1, Integer t2)
+			{
+				final double costPerGbps1 = tpInfo.getCost(t1) / Math.min(tpInfo.getLineRateGbps(t1) , remainingTraffic);
+				final double costPerGbps2 = tpInfo.getCost(t2) / Math.min(tpInfo.getLineRateGbps(t2) , remainingTraffic);
+				if (costPerGbps1 != costPerGbps2) return Double.compare(costPerGbps1 , costPerGbps2);
+				return Integer.compare(tpInfo.getNumSlots(t1) , tpInfo.getNumSlots(t2));
+			}
+		});
+		return res;
+	}
+
+	/* Cores in the order they are tried: by index (first-fit), or by decreasing number of occupied slots (most-used) */
+	private static int [] getOrderedCores (final MCFSpectrumOccupancy occupancy , String coreAssignmentPolicy)
+	{
+		final int C = occupancy.getNumberOfCores();
+		List<Integer> res = new ArrayList<Integer> ();
+		for (int c = 0; c < C ; c ++) res.add(c);
+		if (coreAssignmentPolicy.equalsIgnoreCase("most-used"))
+			Collections.sort(res , new Comparator<Integer> ()
+			{
+				public int compare(Integer c1, Integer c2) { return Integer.compare(occupancy.getNumberOfOccupiedSlots(c2) , occupancy.getNumberOfOccupiedSlots(c1)); }
+			});
+		else if (!coreAssignmentPolicy.equalsIgnoreCase("first-fit")) throw new Net2PlanException ("Unknown core assignment policy: " + coreAssignmentPolicy);
+		int [] orderedCores = new int [C];
+		for (int cont = 0 ; cont < C ; cont ++) orderedCores [cont] = res.get(cont);
+		return orderedCores;
+	}
+
+	/** Returns the demands in the order they are processed */
+	static List<Demand> getOrderedDemands (List<Demand> demands , final Map<Demand,List<List<Link>>> cpl , String ordering , long seed)
+	{
+		List<Demand> res = new ArrayList<Demand> (demands);
+		if (ordering.equalsIgnoreCase("highest-traffic-first"))
+			Collections.sort(res , new Comparator<Demand> ()
+			{
+				public int compare(Demand d1, Demand d2) { return Double.compare(d2.getOfferedTraffic() , d1.getOfferedTraffic()); }
+			});
+		else if (ordering.equalsIgnoreCase("longest-path-first"))
+			Collections.sort(res , new Comparator<Demand> ()
+			{
+				public int compare(Demand d1, Demand d2) { return Double.compare(getShortestPathLengthInKm(cpl.get(d2)) , getShortestPathLengthInKm(cpl.get(d1))); }
+			});
+		else if (ordering.equalsIgnoreCase("random"))
+			Collections.shuffle(res , new Random (seed));
+		else if (!ordering.equalsIgnoreCase("input-order")) throw new Net2PlanException ("Unknown demand ordering: " + ordering);
+		return res;
+	}
+
+	private static double getShortestPathLengthInKm (List<List<Link>> paths)
+	{
+		return paths.isEmpty()? Double.MAX_VALUE : MCFCandidateLightpaths.getLengthInKm(paths.get(0));
+	}
+}
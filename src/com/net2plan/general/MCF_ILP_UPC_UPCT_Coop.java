@@ -13,12 +13,18 @@ package com.net2plan.general;
 
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.jom.DoubleMatrixND;
 import com.jom.OptimizationProblem;
@@ -37,7 +43,9 @@ import com.net2plan.libraries.WDMUtils;
 
 import cern.colt.list.tdouble.DoubleArrayList;
 import cern.colt.list.tint.IntArrayList;
+import cern.colt.matrix.tdouble.DoubleFactory1D;
 import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 
 
@@ -51,11 +59,40 @@ public class MCF_ILP_UPC_UPCT_Coop implements IAlgorithm
 	final private InputParameter wdmLayerIndex = new InputParameter ("wdmLayerIndex", (int) 0 , "Index of the WDM layer (-1 means default layer)");
 	final private InputParameter solverLibraryName = new InputParameter ("solverLibraryName", "" , "The solver library full or relative path, to be used by JOM. Leave blank to use JOM default.");
 	final private InputParameter solverName = new InputParameter ("solverName", "#select# cplex glpk ipopt xpress ", "The solver name to be used by JOM. GLPK and IPOPT are free, XPRESS and CPLEX commercial. GLPK, XPRESS and CPLEX solve linear problems w/w.o integer contraints. IPOPT is can solve nonlinear problems (if convex, returns global optimum), but cannot handle integer constraints");
+	final private InputParameter solverNumThreads = new InputParameter ("solverNumThreads", (int) 0 , "Maximum number of threads of the solver (0 means the solver default). Used with CPLEX (parameter CPX_PARAM_THREADS) and XPRESS (control XPRS_THREADS), GLPK is single-threaded" , 0 , Integer.MAX_VALUE);
 	final private InputParameter maxSolverTimeInSeconds = new InputParameter ("maxSolverTimeInSeconds", (double) -1 , "Maximum time granted to the solver to solve the problem. If this time expires, the solver returns the best solution found so far (if a feasible solution is found)");
 	final private InputParameter numFrequencySlotsPerCore = new InputParameter ("numFrequencySlotsPerCore", (int) 120 , "Number of wavelengths per link" , 1, Integer.MAX_VALUE);
 	final private InputParameter maxPropagationDelayMs = new InputParameter ("maxPropagationDelayMs", (double) -1 , "Maximum allowed propagation time of a lighptath in miliseconds. If non-positive, no limit is assumed");
 //	final private InputParameter transponderTypesInfo = new InputParameter ("transponderTypesInfo", "10 1 1 4000 1; 10 1 1 6000 1; 10 2 2 7000 1; 40 1 1 3000 1; 40 2 2 4000 1; 40 2 2 5000 1; 100 2 2 1000 1; 100 2 2 2000 1; 100 3 3 3000 1;" , "Transponder types separated by \";\" . Each type is characterized by the space-separated values: (i) Line rate in Gbps, (ii) cost of the transponder, (iii) number of slots occupied in each traversed fiber, (iv) optical reach in km (a non-positive number means no reach limit), (v) cost of the optical signal regenerator (regenerators do NOT make wavelength conversion ; if negative, regeneration is not possible).");
-	final private InputParameter ilpType = new InputParameter("ilpType", "#select# non-core-continuity-constraint core-continuity-constraint", "Choose the type of the ILP exection");
+	final private InputParameter ilpType = new InputParameter("ilpType", "#select# non-core-continuity-constraint core-continuity-constraint aggregated-core-continuity-constraint", "Choose the type of the ILP exection. The aggregated option solves the core-continuity problem with one integer number of cores per path and slot, and then assigns the cores to the lightpaths");
+	final private InputParameter maxCoreAssignmentSearchNodes = new InputParameter ("maxCoreAssignmentSearchNodes", (int) 1000000 , "Maximum number of nodes explored by the exact per-core assignment of the aggregated formulation. If exceeded, the full core-continuity formulation is solved" , 1 , Integer.MAX_VALUE);
+	final private InputParameter constraintAssembly = new InputParameter ("constraintAssembly", "#select# triplets legacy" , "How the model is given to JOM. In triplets, the demand and slot clashing constraints are sparse matrices built directly from the candidate paths, and shared by all the cores. In legacy, they are products of per transponder type matrices");
+	final private InputParameter compareConstraintAssembly = new InputParameter ("compareConstraintAssembly", (boolean) false , "If true, the model is also built (not solved) with the other constraint assembly, and the building times and allocated bytes of both are reported");
+
+	final private InputParameter initialSolution = new InputParameter ("initialSolution", "#select# none input-routes heuristic" , "Initial solution given to the solver (MIP start). In input-routes, the lightpaths of the input design are used (e.g. the result of the previous traffic factor). In heuristic, the solution of MCF_Heuristic_UPC_UPCT_Coop (highest traffic first, first-fit) is used");
+	final private InputParameter candidateCache = new InputParameter ("candidateCache", "#select# memory none" , "In memory, the candidate paths, their expansion per transponder type and the model matrices are reused across the executions with the same topology, k, reach, maximum propagation delay and transponder types (e.g. other traffic factors)");
+	final private InputParameter candidateCacheFile = new InputParameter ("candidateCacheFile", "" , "If not blank (and candidateCache is memory), the candidate paths are also stored in files named as this one, one per topology, k and transponder types (see MCFCandidateCache), to be reused by other processes");
+	final private InputParameter crosstalkModel = new InputParameter ("crosstalkModel", "#select# worst-case core-adjacency" , "In worst-case, the reach of each transponder type is the one in the table, computed for all the adjacent cores occupied. In core-adjacency (core-continuity formulation only), the reach of each transponder type in each core is the worst case for the number of cores adjacent to it (see MCFCrosstalkModel), so the outer cores of hexagonal fibers admit longer paths. This is a static per-core reach limit: unlike the heuristic, the ILP does not check the crosstalk of the adjacent cores actually occupied");
+	final private InputParameter presolve = new InputParameter ("presolve", (boolean) true , "If true, before building the model the candidates with a transponder type dominated by other one in the same path (higher or equal line rate, lower or equal cost and slots) and the ones of demands without traffic are removed, and the slots above a bound of the spectrum needed by an optimal solution are removed (see MCFPresolve). The optimal cost is not changed");
+	final private InputParameter decomposition = new InputParameter ("decomposition", "#select# none core spectrum" , "In core, the cores are split into groups, and in spectrum, the slots are split into blocks. Each demand is assigned to one of these partitions, balancing the estimated spectrum per link, and the sub-ILP of each partition is solved in parallel (the aggregated option solves the core-continuity sub-ILPs). The merged solution is feasible but may not be optimal, and the gap to a bound without slot clashing is reported. If the sub-ILP of a partition is infeasible, its demands are provisioned in the resources left free by the others and, if this also fails, the problem is solved without decomposition. The initial solution is not used. Not used in incremental mode");
+	final private InputParameter numPartitions = new InputParameter ("numPartitions", (int) 0 , "Number of partitions of the decomposition (0 means one per core)" , 0 , Integer.MAX_VALUE);
+	final private InputParameter decompositionThreads = new InputParameter ("decompositionThreads", (int) 1 , "Number of sub-ILPs of the decomposition solved in parallel (0 means the number of processors). The threads of the solver (solverNumThreads, or the number of processors) are shared among them. Only the CPLEX solves run concurrently, the rest one at a time (see MCFUtils.solve)" , 0 , Integer.MAX_VALUE);
+	final private InputParameter relaxation = new InputParameter ("relaxation", "#select# none lp-rounding" , "In lp-rounding, the LP relaxation of the formulation is solved (continuous variables), and its solution is rounded with several randomized rounding and repair passes (see MCFRounding). The best rounded design is returned, with the gap to the LP bound (or the bound without slot clashing, if higher). The initial solution is not used");
+	final private InputParameter roundingPasses = new InputParameter ("roundingPasses", (int) 32 , "Number of rounding passes of the lp-rounding relaxation" , 1 , Integer.MAX_VALUE);
+	final private InputParameter roundingSeed = new InputParameter ("roundingSeed", (long) 1 , "Seed of the random numbers of the rounding passes");
+	final private InputParameter roundingThreads = new InputParameter ("roundingThreads", (int) 0 , "Number of rounding passes run in parallel (0 means the number of processors)" , 0 , Integer.MAX_VALUE);
+	final private InputParameter timeoutBound = new InputParameter ("timeoutBound", "#select# spectrum-free lp" , "Bound used to report the MIP gap when the solver stops before proving optimality (the gap is 0 if it does). In spectrum-free, the bound without slot clashing (see MCFDecomposition), which needs no solver call. In lp, the LP relaxation of the formulation is also solved, within lpBoundMaxSolverTimeInSeconds, and the bound is its optimum (if the solver finishes) or the spectrum-free one, if higher");
+	final private InputParameter lpBoundMaxSolverTimeInSeconds = new InputParameter ("lpBoundMaxSolverTimeInSeconds", (double) 60 , "Maximum time granted to the solver for the LP relaxation of the lp timeout bound. If it expires, the spectrum-free bound is used");
+	final private InputParameter provisioningMode = new InputParameter ("provisioningMode", "#select# full incremental" , "In full, all the routes are removed and the whole network is optimized. In incremental, the routes of the input design (and their cores and slots) are kept, and only the offered traffic not carried yet (new or increased demands) is provisioned, with a formulation of these demands over the free resources. The traffic is not scaled, the aggregated option uses the core-continuity formulation and the initial solution is not used");
+
+	private StringBuilder modelBuildReport;
+	private MCFPhaseProfiler profiler;
+	private DoubleMatrix1D trafficToCarry_d; /* in incremental mode, the traffic to provision of each demand */
+	private List<DoubleMatrix1D> residualCapacity_c; /* in incremental mode, number of new lightpaths allowed in each link and slot (e S + s): one vector per core, or one with up to C */
+	private boolean [][] feasibleCore_pc; /* with the core adjacency crosstalk model, true if candidate p is within the reach of its transponder type in core c */
+	private boolean isBoundRelaxation; /* true while the LP relaxation is solved to bound the gap of an integer solution */
+	
+	private final static double PRECISIONFACTOR = 1e-3;
 	final private InputParameter trafficFactor = new InputParameter("trafficFactor", (double) 1.0, "Factor of total carried traffic (It must be lower o equal than 1) ");
 	final private InputParameter scaleTraffic = new InputParameter("scaleTraffic", (boolean) true , "Option to scale the traffic using traffic factor ");
 	
@@ -70,6 +107,11 @@ public class MCF_ILP_UPC_UPCT_Coop implements IAlgorithm
 	{
 		/* Initialize all InputParameter objects defined in this object (this uses Java reflection) */
 		InputParameter.initializeAllInputParameterFieldsOfObject(this, algorithmParameters);
+		this.modelBuildReport = new StringBuilder ();
+		this.profiler = new MCFPhaseProfiler ();
+		this.trafficToCarry_d = null;
+		this.residualCapacity_c = null;
+		this.feasibleCore_pc = null;
 		
 		final NetworkLayer wdmLayer = wdmLayerIndex.getInt () == -1? netPlan.getNetworkLayerDefault() : netPlan.getNetworkLayer(wdmLayerIndex.getInt ());
 
@@ -82,12 +124,20 @@ public class MCF_ILP_UPC_UPCT_Coop implements IAlgorithm
 		
 		if (N == 0 || E == 0 || D == 0 || S == 0 || C == 0) throw new Net2PlanException("This algorithm requires a topology with links, slots and a demand set");
 		
+		/* Read the lightpaths of the input design before removing them, if they are the initial solution. In incremental mode, they are kept */
+		final boolean isIncremental = provisioningMode.getString().equalsIgnoreCase("incremental");
+		MCFLightpaths initialLightpaths = !isIncremental && decomposition.getString().equalsIgnoreCase("none") && !isRelaxed() && initialSolution.getString().equalsIgnoreCase("input-routes")? MCFLightpaths.readFromRoutes(netPlan , wdmLayer) : null;
+		final MCFLightpaths fixedLightpaths = isIncremental? MCFLightpaths.readFromRoutes(netPlan , wdmLayer) : null;
+		
 		/* Remove all routes in current netPlan object. Initialize link capacities and attributes, and demand offered traffic */
-		netPlan.removeAllMulticastTrees(wdmLayer);
-		netPlan.removeAllUnicastRoutingInformation(wdmLayer);
-		netPlan.setRoutingType(RoutingType.SOURCE_ROUTING , wdmLayer);
+		if (!isIncremental)
+		{
+			netPlan.removeAllMulticastTrees(wdmLayer);
+			netPlan.removeAllUnicastRoutingInformation(wdmLayer);
+			netPlan.setRoutingType(RoutingType.SOURCE_ROUTING , wdmLayer);
+		}
 
-		if(scaleTraffic.getBoolean())
+		if(scaleTraffic.getBoolean() && !isIncremental)
 		{
 			if (trafficFactor.getDouble() > 1.0) throw new Net2PlanException("Traffic Factor must be lower o equal than 1.0");
 			
@@ -96,77 +146,769 @@ public class MCF_ILP_UPC_UPCT_Coop implements IAlgorithm
 		}
 		
 		final boolean isNotCCC = ilpType.getString().equalsIgnoreCase("non-core-continuity-constraint");
+		final boolean isAggregatedCCC = !isIncremental && ilpType.getString().equalsIgnoreCase("aggregated-core-continuity-constraint");
+		final boolean isDecomposed = !isIncremental && !decomposition.getString().equalsIgnoreCase("none");
 		
-		// Store transponder info 		
-		WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo(MCFUtils.getMFCTranspondersXTAwareInfo(C));
-		final int T = tpInfo.getNumTypes();	
+		// Store transponder info. With the core adjacency crosstalk model, the candidates are within the reach of the core with fewer adjacent cores
+		final MCFCrosstalkModel xtModel = crosstalkModel.getString().equalsIgnoreCase("core-adjacency") && !isNotCCC && !isAggregatedCCC? new MCFCrosstalkModel (C , MCFUtils.getMFCTranspondersXTAwareInfo(C)) : null;
+		final String transponderTypesInfo = xtModel == null? MCFUtils.getMFCTranspondersXTAwareInfo(C) : xtModel.getTransponderTypesInfoWithBestCoreReach();
+		WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo(transponderTypesInfo);
 		
-		// Compute the candidate path list
-		final Map<Demand,List<List<Link>>> cpl = netPlan.computeUnicastCandidatePathList(wdmLayer , 
-				netPlan.getVectorLinkLengthInKm(wdmLayer).toArray(), "K" , "" + k.getInt() , "maxLengthInKm" , ""+tpInfo.getMaxOpticalReachKm(), "maxPropDelayInMs" , "" + maxPropagationDelayMs.getDouble());
+		// Compute the candidate path list, and the candidates of the formulation (one per path and transponder type within its reach)
+		profiler.start("paths");
+		final Map<Demand,List<List<Link>>> cpl;
+		final MCFCandidateLightpaths allCandidates;
+		if (candidateCache.getString().equalsIgnoreCase("memory"))
+		{
+			final File cacheFile = candidateCacheFile.getString().trim().isEmpty()? null : new File (candidateCacheFile.getString().trim());
+			final Triple<Map<Demand,List<List<Link>>>,MCFCandidateLightpaths,String> cached = MCFCandidateCache.getCandidates(netPlan , wdmLayer , k.getInt() , maxPropagationDelayMs.getDouble() , tpInfo , transponderTypesInfo , cacheFile);
+			cpl = cached.getFirst();
+			allCandidates = cached.getSecond();
+			modelBuildReport.append(" - Candidates : " + cached.getThird());
+		}
+		else
+		{
+			cpl = netPlan.computeUnicastCandidatePathList(wdmLayer , 
+					netPlan.getVectorLinkLengthInKm(wdmLayer).toArray(), "K" , "" + k.getInt() , "maxLengthInKm" , ""+tpInfo.getMaxOpticalReachKm(), "maxPropDelayInMs" , "" + maxPropagationDelayMs.getDouble());
+			allCandidates = MCFCandidateLightpaths.expand(netPlan , wdmLayer , cpl , tpInfo);
+		}
  
-		// Initialize lists needed for ILP 
-		final int maximumNumberOfPaths = T*k.getInt()*D;
-		List<Integer> transponderType_p = new ArrayList<Integer> (maximumNumberOfPaths);
-		List<Double> cost_p = new ArrayList<Double> (maximumNumberOfPaths); 
-		List<Double> lineRate_p = new ArrayList<Double> (maximumNumberOfPaths); 
-		List<Integer> numSlots_p = new ArrayList<Integer> (maximumNumberOfPaths);		
-		List<Demand> demand_p = new ArrayList<Demand> (maximumNumberOfPaths);
-		List<List<Link>> seqLinks_p = new ArrayList<List<Link>>(maximumNumberOfPaths);
+		/* The heuristic solution is created in the design, read, and removed */
+		if (!isIncremental && !isDecomposed && !isRelaxed() && initialSolution.getString().equalsIgnoreCase("heuristic"))
+		{
+			profiler.start("initial-solution");
+			final WDMUtils.TransponderTypesInfo worstCaseTpInfo = xtModel == null? tpInfo : new WDMUtils.TransponderTypesInfo(MCFUtils.getMFCTranspondersXTAwareInfo(C));
+			MCF_Heuristic_UPC_UPCT_Coop.allocateDemands(netPlan , wdmLayer , cpl , worstCaseTpInfo , C , S , "highest-traffic-first" , "first-fit" , 1);
+			initialLightpaths = MCFLightpaths.readFromRoutes(netPlan , wdmLayer);
+			netPlan.removeAllUnicastRoutingInformation(wdmLayer);
+			for (Demand d : netPlan.getDemands(wdmLayer)) d.removeAttribute("fiberCoreIDs");
+		}
+		profiler.stop();
+		if (initialLightpaths != null) modelBuildReport.append(" - Initial solution : " + initialLightpaths.getNumberOfLightpaths() + " lightpaths");
+
+		/* In incremental mode, only the candidates of the demands with traffic to provision, over the resources not used by the fixed lightpaths */
+		MCFCandidateLightpaths candidates = allCandidates;
+		if (isIncremental)
+		{
+			trafficToCarry_d = DoubleFactory1D.dense.make(D);
+			for (Demand d : netPlan.getDemands(wdmLayer))
+				if (d.getOfferedTraffic() - d.getCarriedTraffic() > PRECISIONFACTOR) trafficToCarry_d.set(d.getIndex() , d.getOfferedTraffic() - d.getCarriedTraffic());
+			candidates = new MCFCandidateLightpaths (wdmLayer , allCandidates.getNumberOfCandidates());
+			for (int p = 0 ; p < allCandidates.getNumberOfCandidates() ; p ++)
+				if (trafficToCarry_d.get(allCandidates.demand_p.get(p).getIndex()) > 0)
+					candidates.add(allCandidates.demand_p.get(p) , allCandidates.seqLinks_p.get(p) , allCandidates.transponderType_p.get(p) , tpInfo);
+			residualCapacity_c = getResidualCapacity(fixedLightpaths , !isNotCCC , E , C , S);
+			modelBuildReport.append(" - Incremental : " + trafficToCarry_d.cardinality() + " demands to provision, " + fixedLightpaths.getNumberOfLightpaths() + " fixed lightpaths, " + candidates.getNumberOfCandidates() + " candidates");
+			if (trafficToCarry_d.cardinality() == 0) return "Offered Traffic: " + netPlan.getDemandTotalOfferedTraffic() + " - No traffic to provision" + modelBuildReport + profiler.getReport();
+		}
+
+		if (xtModel != null)
+		{
+			feasibleCore_pc = new boolean [candidates.getNumberOfCandidates()][C];
+			for (int p = 0 ; p < candidates.getNumberOfCandidates() ; p ++)
+			{
+				final double lengthInKm = MCFCandidateLightpaths.getLengthInKm(candidates.seqLinks_p.get(p));
+				for (int c = 0 ; c < C ; c ++) feasibleCore_pc [p][c] = lengthInKm <= xtModel.getWorstCaseReachKm(candidates.transponderType_p.get(p) , c);
+			}
+		}
+
+		/* 1 if candidate p can start at slot s. The presolve removes candidates and initial slots, and may reduce the slots of the model (modelS). 
+		 * With fixed lightpaths, the spectrum is not bounded */
+		int modelS = S;
+		double [][] feasibleAssignment_ps;
+		if (presolve.getBoolean())
+		{
+			profiler.start("presolve");
+			final MCFPresolve presolved = MCFPresolve.apply(candidates , tpInfo , getTrafficToCarry(netPlan , wdmLayer) , feasibleCore_pc , S , !isIncremental);
+			candidates = presolved.getCandidates();
+			feasibleCore_pc = presolved.getFeasibleCores();
+			modelS = presolved.getNumberOfSlots();
+			feasibleAssignment_ps = presolved.getFeasibleInitialSlots();
+			modelBuildReport.append(presolved.getReport(isNotCCC || isAggregatedCCC? 1 : C , D , E));
+			profiler.stop();
+		}
+		else feasibleAssignment_ps = candidates.getFeasibleInitialSlots(S);
+		if (isIncremental) removeOccupiedInitialSlots(feasibleAssignment_ps , candidates , S);
+
+		// Initialize lists needed for ILP
+		final List<Integer> numSlots_p = candidates.numSlots_p;
+		final List<List<Link>> seqLinks_p = candidates.seqLinks_p;
 		
-		for (Demand d : netPlan.getDemands())
+		/* Solve the selected formulation. The aggregated model is a relaxation of the core-continuity one (n_ps = sum_c x_psc), so 
+		 * if its optimum admits a per-core assignment, this assignment is also optimal for the core-continuity formulation */
+		DoubleMatrix2D x_ps = null;
+		List<DoubleMatrix2D> x_psc = null;
+		
+		if (isDecomposed)
 		{
-			boolean atLeastOnePath = false;
-			
-			for (int t = 0; t < T; t++)
-			{			
-				for (List<Link> path : cpl.get(d))
+			final List<DoubleMatrix2D> solution = solveDecomposition(!isNotCCC , netPlan , algorithmParameters , tpInfo , candidates , feasibleAssignment_ps , C , modelS);
+			if (isNotCCC) x_ps = solution.get(0); else x_psc = solution;
+		}
+		else if (isNotCCC) 
+			x_ps = solveFormulation(false, 1, netPlan, tpInfo, candidates, feasibleAssignment_ps, C, modelS, initialLightpaths).get(0);
+		else if (isAggregatedCCC)
+		{
+			final DoubleMatrix2D n_ps = solveFormulation(false, C, netPlan, tpInfo, candidates, feasibleAssignment_ps, C, modelS, initialLightpaths).get(0);
+			final boolean [] isSearchLimitReached = new boolean [1];
+			x_psc = assignFiberCores(n_ps, seqLinks_p, numSlots_p, C, isSearchLimitReached);
+			if (x_psc == null) /* the aggregated optimum cannot be split into cores: solve the full core-continuity formulation */
+			{
+				modelBuildReport.append(" - Aggregated solution not used : " + getCoreAssignmentFailure(isSearchLimitReached [0]) + ". Full core-continuity formulation solved");
+				x_psc = solveFormulation(true, 1, netPlan, tpInfo, candidates, feasibleAssignment_ps, C, modelS, initialLightpaths);
+			}
+		}
+		else
+			x_psc = solveFormulation(true, 1, netPlan, tpInfo, candidates, feasibleAssignment_ps, C, modelS, initialLightpaths);
+		
+		/* Create the lightpaths according to the solutions given */
+		profiler.start("write-back");
+		WDMUtils.setFibersNumFrequencySlots(netPlan , numFrequencySlotsPerCore.getInt() , wdmLayer);
+		createLightpaths(netPlan , candidates , isNotCCC? Collections.singletonList(x_ps) : x_psc , isNotCCC);
+		
+		// Check Spectrum Clashing
+		profiler.start("clash-check");
+		if (isNotCCC)
+		{
+			if (C == 1)	WDMUtils.checkResourceAllocationClashing(netPlan,false,false,wdmLayer);
+		}
+		else
+			MCFUtils.checkResourceAllocationClashingPerCore(netPlan, C, wdmLayer);
+		profiler.stop();
+		
+		// Store results		
+		final double throughput = netPlan.getDemandTotalCarriedTraffic();
+		final double totalFSOccupied = netPlan.getVectorLinkTotalOccupiedCapacity().zSum();
+		final double alpha = trafficFactor.getDouble();
+		final double totalOfferedTraffic = netPlan.getDemandTotalOfferedTraffic();
+		
+		File file = new File(netPlan.getNetworkName()+ilpType.getString()+".txt");
+		MCFUtils.appendToResultsFile(file , "C throughput totalFSOccupied totalOfferedTraffic alpha " + MCFPhaseProfiler.getResultsFileHeader() ,
+				Integer.toString(C) + " " + throughput + " " + totalFSOccupied+ " " + totalOfferedTraffic + " " + alpha + " " + profiler.getResultsFileColumns());
+		
+		return "Offered Traffic: " + netPlan.getDemandTotalOfferedTraffic() +" - Throughut (Gbps): " + throughput + " - Total FSOccupied : " + totalFSOccupied + " - Alpha : " + trafficFactor.getDouble() + modelBuildReport + profiler.getReport(); // this is the message that will be shown in the screen at the end of the algorithm
+	}
+
+	/** Returns a description message that will be shown in the graphical user interface
+	 */
+	@Override
+	public String getDescription()
+	{
+		return "Formulation-Based RSMA Algorithm availables : Non Core Continuity Constraint, Core Continuity Constraint";
+	}
+
+	
+	/** Returns the list of input parameters of the algorithm. For each parameter, you should return a Triple with its name, default value and a description
+	 * @return
+	 */
+	@Override
+	public List<Triple<String, String, String>> getParameters()	
+	{
+		return InputParameter.getInformationAllInputParameterFieldsOfObject(this);
+	}
+
+	/* Creates the lightpaths of the solution: one matrix x_ps (no core continuity), or one per core, with the attribute fiberCoreID. Each variable 
+	 * gives round(x) lightpaths. The nonzeros of each matrix are read once and grouped by candidate (counting sort), so the lightpaths are created 
+	 * in the order of candidate, core and initial slot, and the attribute fiberCoreIDs of the demands is built once, at the end */
+	static void createLightpaths (NetPlan netPlan , MCFCandidateLightpaths candidates , List<DoubleMatrix2D> x_psc , boolean isNotCCC)
+	{
+		final int P = candidates.getNumberOfCandidates();
+		final List<Double> lineRate_p = candidates.lineRate_p;
+		final List<Integer> numSlots_p = candidates.numSlots_p;
+		final List<Demand> demand_p = candidates.demand_p;
+		final List<List<Link>> seqLinks_p = candidates.seqLinks_p;
+
+		List<IntArrayList> rows_c = new ArrayList<IntArrayList> (), columns_c = new ArrayList<IntArrayList> ();
+		List<DoubleArrayList> vals_c = new ArrayList<DoubleArrayList> ();
+		int [] first_p = new int [P + 1];
+		for (DoubleMatrix2D x_ps : x_psc)
+		{
+			IntArrayList rows = new IntArrayList (); IntArrayList columns = new IntArrayList (); DoubleArrayList vals = new DoubleArrayList ();
+			x_ps.getNonZeros(rows , columns , vals);
+			rows_c.add(rows); columns_c.add(columns); vals_c.add(vals);
+			for (int cont = 0 ; cont < rows.size() ; cont ++) first_p [rows.get(cont) + 1] ++;
+		}
+		for (int p = 0 ; p < P ; p ++) first_p [p + 1] += first_p [p];
+		final int numNonZeros = first_p [P];
+		int [] core_n = new int [numNonZeros], slot_n = new int [numNonZeros], number_n = new int [numNonZeros];
+		int [] next_p = Arrays.copyOf(first_p , P);
+		for (int c = 0 ; c < x_psc.size() ; c ++)
+			for (int cont = 0 ; cont < rows_c.get(c).size() ; cont ++)
+			{
+				final int n = next_p [rows_c.get(c).get(cont)] ++;
+				core_n [n] = c;
+				slot_n [n] = columns_c.get(c).get(cont);
+				number_n [n] = (int) Math.round(vals_c.get(c).get(cont));
+			}
+
+		for (int p = 0 ; p < P ; p ++)
+		{
+			/* The nonzeros of a candidate are few: sort them by core and initial slot by insertion */
+			for (int n = first_p [p] + 1 ; n < first_p [p + 1] ; n ++)
+				for (int n2 = n ; n2 > first_p [p] && (core_n [n2 - 1] > core_n [n2] || (core_n [n2 - 1] == core_n [n2] && slot_n [n2 - 1] > slot_n [n2])) ; n2 --)
 				{
-					if ((getLengthInKm(path) > tpInfo.getOpticalReachKm(t))) break;
-					cost_p.add(tpInfo.getCost(t));
-					transponderType_p.add(t);
-					lineRate_p.add(tpInfo.getLineRateGbps(t));
-					numSlots_p.add(tpInfo.getNumSlots(t));
-					demand_p.add(d);					
-					seqLinks_p.add(path);
-					atLeastOnePath = true;						
+					int aux = core_n [n2]; core_n [n2] = core_n [n2 - 1]; core_n [n2 - 1] = aux;
+					aux = slot_n [n2]; slot_n [n2] = slot_n [n2 - 1]; slot_n [n2 - 1] = aux;
+					aux = number_n [n2]; number_n [n2] = number_n [n2 - 1]; number_n [n2 - 1] = aux;
+				}
+			for (int n = first_p [p] ; n < first_p [p + 1] ; n ++)
+				for (int cont = 0 ; cont < number_n [n] ; cont ++)
+				{
+					Route r = WDMUtils.addLightpath(demand_p.get(p) , new WDMUtils.RSA(seqLinks_p.get(p) , slot_n [n] , numSlots_p.get(p)), lineRate_p.get(p));
+					if (!isNotCCC) r.setAttribute("fiberCoreID", Integer.toString(core_n [n]));
 				}
-			}
-			if (!atLeastOnePath) throw new Net2PlanException ("There are no possible routes for a demand (" + d + "). The topology may be not connected enough, or the optical reach may be too small");
 		}
-		final int P = transponderType_p.size(); // one per potential sequence of links and transponder
+		if (!isNotCCC)
+			for (Demand d : netPlan.getDemands(candidates.getLayer())) MCFUtils.setFiberCoreIDsAttribute(d);
+	}
 
-		/* Compute some important matrices for the formulation */		
-		
-		DoubleMatrix2D A_dp = DoubleFactory2D.sparse.make(D,P); /* 1 is path p is assigned to demand d */
-		DoubleMatrix2D A_ep = DoubleFactory2D.sparse.make(E,P); /* 1 if path p travserses link e */		
+	/* Builds and solves the formulation. If oneCopyPerCore is true, one binary matrix x_ps per core is created (core continuity constraint), 
+	 * if not, a single matrix x_ps, with up to maxLightpathsPerPathAndSlot lightpaths per path and initial slot, where the clashing constraint 
+	 * allows up to C lightpaths per link and slot. If initialLightpaths is not null, they are the initial solution given to the solver. 
+	 * Returns the list of solution matrices (one per core, or just one) */
+	private List<DoubleMatrix2D> solveFormulation (boolean oneCopyPerCore , int maxLightpathsPerPathAndSlot , NetPlan netPlan , WDMUtils.TransponderTypesInfo tpInfo , 
+			MCFCandidateLightpaths candidates , double [][] feasibleAssignment_ps , int C , int S , MCFLightpaths initialLightpaths)
+	{
+		final boolean tripletAssembly = constraintAssembly.getString().equalsIgnoreCase("triplets") || trafficToCarry_d != null; /* the incremental mode and the sub-ILPs are only built with triplets */
+		final int P = candidates.getNumberOfCandidates();
+		final boolean isNotCCC = !oneCopyPerCore;
+
+		/* Build (and discard) the model with the other assembly, to compare them */
+		if (compareConstraintAssembly.getBoolean() && trafficToCarry_d == null)
+			createFormulationAndReport(!tripletAssembly , oneCopyPerCore , maxLightpathsPerPathAndSlot , netPlan , tpInfo , candidates , feasibleAssignment_ps , C , S);
 
-		double [][] feasibleAssignment_ps = new double [P][S];
+		/* The model matrices (memoized in the candidates), and then the JOM model, that parses the expressions */
+		final int D = netPlan.getNumberOfDemands(candidates.getLayer());
+		final int E = netPlan.getNumberOfLinks(candidates.getLayer());
+		profiler.start("model-matrices");
+		if (tripletAssembly) { candidates.getVectorCandidateSlotCost(S); candidates.getMatrixDemand2CandidateSlot(D , S); candidates.getMatrixLinkSlot2CandidateSlot(E , S); }
+		else { candidates.getMatrixDemand2Candidate(D); candidates.getMatrixLink2Candidate(E); }
+		profiler.start("jom-model");
+		OptimizationProblem op = createFormulationAndReport(tripletAssembly , oneCopyPerCore , maxLightpathsPerPathAndSlot , netPlan , tpInfo , candidates , feasibleAssignment_ps , C , S);
+		if (initialLightpaths != null && !isRelaxed()) setInitialSolution(op , tripletAssembly , oneCopyPerCore , maxLightpathsPerPathAndSlot , candidates , C , S , initialLightpaths);
+		final int numCopies = isNotCCC? 1 : C;
+		profiler.setModelSize(P , (long) P * S * numCopies , D + (long) E * S * numCopies);
 		
-		for (int p = 0; p < P; p++)
+		profiler.start("solver");
+		solve(op);
+		profiler.stop();
+
+		/* If a feasible solution was not found, quit (this may also happen if after the maximum solver time no feasible solution is found) */
+		if (!op.solutionIsFeasible()) throw new Net2PlanException("A feasible solution was not found");
+
+		/* MIP gap: JOM gives the optimality status, but not the best bound of the solver, so if it stopped before, the bound is computed here */
+		if (!isRelaxed())
+		{
+			double gap = 0;
+			if (!op.solutionIsOptimal())
+			{
+				profiler.start("bound");
+				final String [] boundType = new String [1];
+				final double bound = getLowerBound(tripletAssembly , oneCopyPerCore , maxLightpathsPerPathAndSlot , netPlan , tpInfo , candidates , feasibleAssignment_ps , C , S , boundType);
+				profiler.stop();
+				final double cost = op.getOptimalCost();
+				gap = cost <= 0? 0 : Math.max(0 , (cost - bound) / cost);
+				modelBuildReport.append(" - Solver stopped before optimality : cost " + cost + ", bound (" + boundType [0] + ") " + bound + ", gap " + gap);
+			}
+			profiler.setMipGap(gap);
+		}
+		profiler.start("write-back");
+
+		/* Retrieve the optimum solutions. In the triplet assembly, the variables are row vectors with the element p S + s of the candidate p and initial slot s */
+		List<DoubleMatrix2D> x_psc = new ArrayList<DoubleMatrix2D>();
+		for (int c = 0; c < (isNotCCC? 1 : C); c++)
+		{
+			final String name = isNotCCC? "x_ps" : "x_ps"+Integer.toString(c);
+			if (!tripletAssembly) { x_psc.add(op.getPrimalSolution(name).view2D()); continue; }
+			DoubleMatrix2D x_ps = DoubleFactory2D.sparse.make(P,S);
+			IntArrayList qs = new IntArrayList (); DoubleArrayList vals = new DoubleArrayList ();
+			op.getPrimalSolution(name).elements().getNonZeros(qs , vals);
+			for (int cont = 0 ; cont < qs.size() ; cont ++)
+				x_ps.set(qs.get(cont) / S , qs.get(cont) % S , vals.get(cont));
+			x_psc.add(x_ps);
+		}
+		profiler.stop();
+		if (isRelaxed()) x_psc = roundRelaxedSolution(op , x_psc , oneCopyPerCore , maxLightpathsPerPathAndSlot , netPlan , candidates , C);
+		return x_psc;
+	}
+
+	/* True if the variables of the formulation are continuous: its solution is rounded, or it is solved to bound the gap */
+	private boolean isRelaxed ()
+	{
+		return isBoundRelaxation || "lp-rounding".equalsIgnoreCase(relaxation.getString());
+	}
+
+	/* Solves the problem with the selected solver, maximum time and threads (see MCFUtils.solve) */
+	private void solve (OptimizationProblem op)
+	{
+		MCFUtils.solve(op , solverName.getString() , solverLibraryName.getString() , maxSolverTimeInSeconds.getDouble() , solverNumThreads.getInt());
+	}
+
+	/* Lower bound of the optimal cost of the formulation: the bound without slot clashing and, with the lp timeout bound, the optimum of the 
+	 * LP relaxation (if solved to optimality), the highest of them. The type of the bound used is set in boundType[0], for the report */
+	private double getLowerBound (boolean tripletAssembly , boolean oneCopyPerCore , int maxLightpathsPerPathAndSlot , NetPlan netPlan , WDMUtils.TransponderTypesInfo tpInfo , 
+			MCFCandidateLightpaths candidates , double [][] feasibleAssignment_ps , int C , int S , String [] boundType)
+	{
+		final DoubleMatrix1D h_d = getTrafficToCarry(netPlan , candidates.getLayer());
+		final int [] numPerGbpsDemands = new int [1];
+		double bound = MCFDecomposition.getSpectrumFreeLowerBound(candidates , h_d , numPerGbpsDemands);
+		boundType [0] = "spectrum-free, " + MCFDecomposition.getSpectrumFreeLowerBoundType(numPerGbpsDemands [0]);
+		if (!timeoutBound.getString().equalsIgnoreCase("lp")) return bound;
+		isBoundRelaxation = true;
+		try
+		{
+			OptimizationProblem op = tripletAssembly? 
+					createFormulationFromTriplets(oneCopyPerCore , maxLightpathsPerPathAndSlot , netPlan , candidates , feasibleAssignment_ps , C , S) : 
+					createFormulationFromMatrixExpressions(oneCopyPerCore , maxLightpathsPerPathAndSlot , netPlan , tpInfo , candidates , feasibleAssignment_ps , C , S);
+			MCFUtils.solve(op , solverName.getString() , solverLibraryName.getString() , lpBoundMaxSolverTimeInSeconds.getDouble() , solverNumThreads.getInt());
+			if (op.solutionIsOptimal() && op.getOptimalCost() > bound) { bound = op.getOptimalCost(); boundType [0] = "lp"; }
+		} finally { isBoundRelaxation = false; }
+		return bound;
+	}
+
+	/* Rounds the solution of the LP relaxation, and reports its cost, the bound (the LP optimum, or the bound without slot clashing if higher) and the gap */
+	private List<DoubleMatrix2D> roundRelaxedSolution (OptimizationProblem op , List<DoubleMatrix2D> relaxed_psc , boolean oneCopyPerCore , int maxLightpathsPerPathAndSlot , NetPlan netPlan , 
+			MCFCandidateLightpaths candidates , int C)
+	{
+		profiler.start("rounding");
+		final DoubleMatrix1D h_d = getTrafficToCarry(netPlan , candidates.getLayer());
+		final int numThreads = roundingThreads.getInt() == 0? Runtime.getRuntime().availableProcessors() : roundingThreads.getInt();
+		final MCFRounding rounding = MCFRounding.round(candidates , relaxed_psc , oneCopyPerCore? 1 : C , oneCopyPerCore? 1 : maxLightpathsPerPathAndSlot , netPlan.getNumberOfLinks(candidates.getLayer()) , h_d , 
+				residualCapacity_c , oneCopyPerCore? feasibleCore_pc : null , roundingPasses.getInt() , roundingSeed.getLong() , numThreads);
+		profiler.addAllocatedBytes("rounding" , rounding.getWorkerAllocatedBytes());
+		profiler.stop();
+		if (rounding.getSolution() == null) throw new Net2PlanException("The rounding of the LP relaxation did not find a feasible solution in " + roundingPasses.getInt() + " passes");
+
+		final double lpBound = op.solutionIsOptimal()? op.getOptimalCost() : 0; /* the LP optimum is a bound only if the solver finished */
+		final int [] numPerGbpsDemands = new int [1];
+		final double spectrumFreeBound = MCFDecomposition.getSpectrumFreeLowerBound(candidates , h_d , numPerGbpsDemands);
+		final double bound = Math.max(lpBound , spectrumFreeBound);
+		final double gap = rounding.getCost() <= 0? 0 : Math.max(0 , (rounding.getCost() - bound) / rounding.getCost());
+		profiler.setMipGap(gap);
+		modelBuildReport.append(" - LP rounding : cost " + rounding.getCost() + ", LP bound " + lpBound + ", bound (" + (lpBound >= spectrumFreeBound? "lp" : "spectrum-free, " + MCFDecomposition.getSpectrumFreeLowerBoundType(numPerGbpsDemands [0])) + ") " + bound + ", gap " + gap + ", " + rounding.getNumberOfFeasiblePasses() + " of " + roundingPasses.getInt() + " passes feasible");
+		return rounding.getSolution();
+	}
+
+	/* Splits the problem in partitions of cores or slots, assigns each demand to one of them, solves the sub-ILPs in parallel (each one with its own 
+	 * object of this class, with the traffic of its demands) and merges their solutions, with the candidates of the whole problem */
+	private List<DoubleMatrix2D> solveDecomposition (final boolean oneCopyPerCore , final NetPlan netPlan , Map<String, String> algorithmParameters , final WDMUtils.TransponderTypesInfo tpInfo , 
+			MCFCandidateLightpaths candidates , double [][] feasibleAssignment_ps , int C , int S)
+	{
+		final boolean byCore = decomposition.getString().equalsIgnoreCase("core");
+		final int P = candidates.getNumberOfCandidates();
+		final int D = netPlan.getNumberOfDemands(candidates.getLayer());
+		final int E = netPlan.getNumberOfLinks(candidates.getLayer());
+		final int total = byCore? C : S;
+		final int K = Math.max(1 , Math.min(numPartitions.getInt() == 0? C : numPartitions.getInt() , total));
+		final int numProcessors = Runtime.getRuntime().availableProcessors();
+		final int numThreads = Math.min(K , decompositionThreads.getInt() == 0? numProcessors : decompositionThreads.getInt());
+		final DoubleMatrix1D h_d = netPlan.getVectorDemandOfferedTraffic(candidates.getLayer());
+
+		/* First core or slot of each partition: the first ones have one more if they cannot be equal */
+		final int [] first_k = new int [K + 1];
+		double [] capacity_k = new double [K];
+		for (int k = 0 ; k < K ; k ++)
 		{
-			A_dp.set(demand_p.get(p).getIndex(), p, 1.0);
-			for (Link e : seqLinks_p.get(p)) A_ep.set (e.getIndex() , p , 1.0);
-			for (int s = 0; s < S + 1 - numSlots_p.get(p) ; s ++)
-				feasibleAssignment_ps [p][s] = 1;
-		}		
+			first_k [k + 1] = first_k [k] + total / K + (k < total % K? 1 : 0);
+			capacity_k [k] = (first_k [k + 1] - first_k [k]) * (byCore? S : C);
+		}
+		final int [] partition_d = MCFDecomposition.assignDemandsToPartitions(candidates , h_d , E , capacity_k);
+
+		Map<String,String> subParameters = new HashMap<String,String> (algorithmParameters);
+		subParameters.put("solverNumThreads" , "" + Math.max(1 , (solverNumThreads.getInt() > 0? solverNumThreads.getInt() : numProcessors) / numThreads));
+		subParameters.put("compareConstraintAssembly" , "false");
+		subParameters.put("timeoutBound" , "spectrum-free"); /* the gap of the merged solution is computed here */
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		List<Future<List<DoubleMatrix2D>>> futures = new ArrayList<Future<List<DoubleMatrix2D>>> ();
+		List<MCF_ILP_UPC_UPCT_Coop> subProblems = new ArrayList<MCF_ILP_UPC_UPCT_Coop> ();
+		List<int []> candidateIndex_k = new ArrayList<int []> ();
+		for (int k = 0 ; k < K ; k ++)
+		{
+			final int numCores_k = byCore? first_k [k + 1] - first_k [k] : C;
+			final int numSlots_k = byCore? S : first_k [k + 1] - first_k [k];
+			final int coreOffset = byCore? first_k [k] : 0;
+			final int slotOffset = byCore? 0 : first_k [k];
+
+			/* The candidates and traffic of the demands of the partition, and their initial slots and cores in it */
+			final MCF_ILP_UPC_UPCT_Coop subProblem = createSubProblem(subParameters);
+			subProblem.trafficToCarry_d = DoubleFactory1D.dense.make(D);
+			for (int d = 0 ; d < D ; d ++) if (partition_d [d] == k) subProblem.trafficToCarry_d.set(d , h_d.get(d));
+			final MCFCandidateLightpaths subCandidates = new MCFCandidateLightpaths (candidates.getLayer() , P / K + 1);
+			IntArrayList candidateIndex = new IntArrayList ();
+			for (int p = 0 ; p < P ; p ++)
+				if (partition_d [candidates.demand_p.get(p).getIndex()] == k)
+				{
+					subCandidates.add(candidates.demand_p.get(p) , candidates.seqLinks_p.get(p) , candidates.transponderType_p.get(p) , tpInfo);
+					candidateIndex.add(p);
+				}
+			candidateIndex.trimToSize();
+			final int subP = candidateIndex.size();
+			final double [][] subFeasibleAssignment_ps = subCandidates.getFeasibleInitialSlots(numSlots_k);
+			for (int p = 0 ; p < subP ; p ++)
+				for (int s = 0 ; s < numSlots_k ; s ++) subFeasibleAssignment_ps [p][s] *= feasibleAssignment_ps [candidateIndex.get(p)][s + slotOffset];
+			if (feasibleCore_pc != null)
+			{
+				subProblem.feasibleCore_pc = new boolean [subP][];
+				for (int p = 0 ; p < subP ; p ++) subProblem.feasibleCore_pc [p] = Arrays.copyOfRange(feasibleCore_pc [candidateIndex.get(p)] , coreOffset , coreOffset + numCores_k);
+			}
+			subProblems.add(subProblem);
+			candidateIndex_k.add(candidateIndex.elements());
+			if (subP == 0) { futures.add(null); continue; }
+			futures.add(executor.submit(new Callable<List<DoubleMatrix2D>> ()
+			{
+				public List<DoubleMatrix2D> call () { return subProblem.solveFormulation(oneCopyPerCore , 1 , netPlan , tpInfo , subCandidates , subFeasibleAssignment_ps , numCores_k , numSlots_k , null); }
+			}));
+		}
+		executor.shutdown();
+
+		/* Merge the solutions, with the cores and slots of each partition, and the indexes of the candidates of the whole problem. The partitions 
+		 * without a solution (the assignment of the demands is an estimate, so their sub-ILP may be infeasible) are repaired below */
+		profiler.start("solver");
+		List<DoubleMatrix2D> x_psc = new ArrayList<DoubleMatrix2D> ();
+		for (int c = 0 ; c < (oneCopyPerCore? C : 1) ; c ++) x_psc.add(DoubleFactory2D.sparse.make(P , S));
+		int numCandidates = 0; long numVariables = 0 , numConstraints = 0;
+		StringBuilder partitionReport = new StringBuilder ();
+		boolean [] isFailed_k = new boolean [K];
+		int numFailed = 0;
+		IntArrayList rows = new IntArrayList (); IntArrayList columns = new IntArrayList (); DoubleArrayList vals = new DoubleArrayList ();
+		try
+		{
+			for (int k = 0 ; k < K ; k ++)
+			{
+				if (futures.get(k) == null) continue;
+				List<DoubleMatrix2D> subSolution = null;
+				final int [] candidateIndex = candidateIndex_k.get(k);
+				final MCFPhaseProfiler subProfiler = subProblems.get(k).profiler;
+				try { subSolution = futures.get(k).get(); }
+				catch (ExecutionException e) 
+				{ 
+					isFailed_k [k] = true;
+					numFailed ++;
+					partitionReport.append(" " + k + ": failed (" + e.getCause().getMessage() + ");");
+				}
+				catch (InterruptedException e) { throw new Net2PlanException ("Interrupted while solving the decomposition"); }
+				profiler.addAllocatedBytes("solver" , subProfiler.getTotalAllocatedBytes()); /* the sub-ILPs run in the threads of the pool */
+				if (isFailed_k [k]) continue;
+				for (int c = 0 ; c < subSolution.size() ; c ++)
+				{
+					final DoubleMatrix2D x_ps = x_psc.get(oneCopyPerCore? c + (byCore? first_k [k] : 0) : 0);
+					subSolution.get(c).getNonZeros(rows , columns , vals);
+					for (int cont = 0 ; cont < rows.size() ; cont ++)
+					{
+						final int p = candidateIndex [rows.get(cont)];
+						final int s = columns.get(cont) + (byCore? 0 : first_k [k]);
+						x_ps.set(p , s , x_ps.get(p , s) + vals.get(cont));
+					}
+				}
+				numCandidates += candidateIndex.length;
+				final int numCopies = oneCopyPerCore? (byCore? first_k [k + 1] - first_k [k] : C) : 1;
+				final int numSlots_k = byCore? S : first_k [k + 1] - first_k [k];
+				numVariables += (long) candidateIndex.length * numSlots_k * numCopies;
+				numConstraints += D + (long) E * numSlots_k * numCopies;
+				partitionReport.append(String.format(Locale.US , " %d: %d candidates, %.3f s;" , k , candidateIndex.length , subProfiler.getTimeInSeconds("model-matrices") + subProfiler.getTimeInSeconds("jom-model") + subProfiler.getTimeInSeconds("solver")));
+			}
+		} finally { executor.shutdownNow(); }
+
+		/* Recovery of the failed partitions: their demands are provisioned together, in all the cores and slots not used by the merged solution 
+		 * (as in the incremental mode). If this fails too, the whole problem is solved without decomposition */
+		String recoveryReport = "";
+		boolean isMonolithic = false;
+		if (numFailed > 0)
+		{
+			Map<String,String> repairParameters = new HashMap<String,String> (algorithmParameters);
+			repairParameters.put("compareConstraintAssembly" , "false");
+			repairParameters.put("timeoutBound" , "spectrum-free");
+			final MCF_ILP_UPC_UPCT_Coop repairProblem = createSubProblem(repairParameters);
+			repairProblem.trafficToCarry_d = DoubleFactory1D.dense.make(D);
+			for (int d = 0 ; d < D ; d ++) if (partition_d [d] != -1 && isFailed_k [partition_d [d]]) repairProblem.trafficToCarry_d.set(d , h_d.get(d));
+			final MCFCandidateLightpaths repairCandidates = new MCFCandidateLightpaths (candidates.getLayer() , P / K + 1);
+			IntArrayList candidateIndex = new IntArrayList ();
+			for (int p = 0 ; p < P ; p ++)
+				if (repairProblem.trafficToCarry_d.get(candidates.demand_p.get(p).getIndex()) > 0)
+				{
+					repairCandidates.add(candidates.demand_p.get(p) , candidates.seqLinks_p.get(p) , candidates.transponderType_p.get(p) , tpInfo);
+					candidateIndex.add(p);
+				}
+			final int repairP = candidateIndex.size();
+			double [][] repairFeasibleAssignment_ps = new double [repairP][];
+			for (int p = 0 ; p < repairP ; p ++) repairFeasibleAssignment_ps [p] = feasibleAssignment_ps [candidateIndex.get(p)].clone();
+			if (feasibleCore_pc != null)
+			{
+				repairProblem.feasibleCore_pc = new boolean [repairP][];
+				for (int p = 0 ; p < repairP ; p ++) repairProblem.feasibleCore_pc [p] = feasibleCore_pc [candidateIndex.get(p)];
+			}
+			repairProblem.residualCapacity_c = getResidualCapacity(candidates , x_psc , oneCopyPerCore , E , C , S);
+			repairProblem.removeOccupiedInitialSlots(repairFeasibleAssignment_ps , repairCandidates , S);
+			try
+			{
+				final List<DoubleMatrix2D> repairSolution = repairProblem.solveFormulation(oneCopyPerCore , 1 , netPlan , tpInfo , repairCandidates , repairFeasibleAssignment_ps , C , S , null);
+				for (int c = 0 ; c < repairSolution.size() ; c ++)
+				{
+					repairSolution.get(c).getNonZeros(rows , columns , vals);
+					for (int cont = 0 ; cont < rows.size() ; cont ++)
+					{
+						final int p = candidateIndex.get(rows.get(cont));
+						x_psc.get(c).set(p , columns.get(cont) , x_psc.get(c).get(p , columns.get(cont)) + vals.get(cont));
+					}
+				}
+				numCandidates += repairP;
+				numVariables += (long) repairP * S * (oneCopyPerCore? C : 1);
+				numConstraints += D + (long) E * S * (oneCopyPerCore? C : 1);
+				recoveryReport = " - Recovery : " + numFailed + " failed partitions, their demands provisioned in the free resources (" + repairP + " candidates)";
+			} catch (Net2PlanException e)
+			{
+				isMonolithic = true;
+				recoveryReport = " - Recovery : " + numFailed + " failed partitions, and their demands do not fit in the free resources (" + e.getMessage() + "): solved without decomposition";
+			}
+			profiler.addAllocatedBytes("solver" , repairProblem.profiler.getTotalAllocatedBytes());
+			if (isMonolithic) x_psc = solveFormulation(oneCopyPerCore , 1 , netPlan , tpInfo , candidates , feasibleAssignment_ps , C , S , null);
+		}
+		profiler.stop();
+
+		double cost = 0;
+		for (DoubleMatrix2D x_ps : x_psc)
+		{
+			x_ps.getNonZeros(rows , columns , vals);
+			for (int cont = 0 ; cont < rows.size() ; cont ++) cost += candidates.cost_p.get(rows.get(cont)) * vals.get(cont);
+		}
+		final int [] numPerGbpsDemands = new int [1];
+		final double bound = MCFDecomposition.getSpectrumFreeLowerBound(candidates , h_d , numPerGbpsDemands);
+		final double gap = cost <= 0? 0 : Math.max(0 , (cost - bound) / cost);
+		if (!isMonolithic) profiler.setModelSize(numCandidates , numVariables , numConstraints);
+		profiler.setMipGap(gap);
+		profiler.setDecompositionRecovery(numFailed , isMonolithic);
+		modelBuildReport.append(" - Decomposition (" + K + " partitions by " + (byCore? "core" : "spectrum") + ", " + numThreads + " threads) : cost " + cost + ", bound (spectrum-free, " + MCFDecomposition.getSpectrumFreeLowerBoundType(numPerGbpsDemands [0]) + ") " + bound + ", gap " + gap + " - Partitions :" + partitionReport + recoveryReport);
+		return x_psc;
+	}
+
+	/* A new object of this class to solve a part of the problem, with the given parameters and its own report and profiler */
+	private static MCF_ILP_UPC_UPCT_Coop createSubProblem (Map<String,String> parameters)
+	{
+		final MCF_ILP_UPC_UPCT_Coop res = new MCF_ILP_UPC_UPCT_Coop ();
+		InputParameter.initializeAllInputParameterFieldsOfObject(res , parameters);
+		res.modelBuildReport = new StringBuilder ();
+		res.profiler = new MCFPhaseProfiler ();
+		return res;
+	}
+
+	/* Upper bounds of the variables of candidate p and initial slot s: maxLightpaths if the slot is feasible, and (for the variables of core c, 
+	 * if c is not -1) the candidate is within its reach in the core */
+	private double [][] getUpperBounds (double [][] feasibleAssignment_ps , int maxLightpaths , int c)
+	{
+		double [][] res = new double [feasibleAssignment_ps.length][];
+		for (int p = 0 ; p < feasibleAssignment_ps.length ; p ++)
+		{
+			res [p] = new double [feasibleAssignment_ps [p].length];
+			if (c != -1 && feasibleCore_pc != null && !feasibleCore_pc [p][c]) continue;
+			for (int s = 0 ; s < res [p].length ; s ++) res [p][s] = maxLightpaths * feasibleAssignment_ps [p][s];
+		}
+		return res;
+	}
+
+	/* Number of new lightpaths allowed in each link and slot (e S + s), given the fixed lightpaths: C minus the fixed lightpaths in the slot, or 
+	 * per core, 1 if the slot is not used by a fixed lightpath in the core */
+	private static List<DoubleMatrix1D> getResidualCapacity (MCFLightpaths fixedLightpaths , boolean oneVectorPerCore , int E , int C , int S)
+	{
+		List<DoubleMatrix1D> res = new ArrayList<DoubleMatrix1D> ();
+		if (!oneVectorPerCore)
+		{
+			final int [] numLightpaths_es = fixedLightpaths.getNumberOfLightpathsPerLinkAndSlot(E , S);
+			DoubleMatrix1D u_es = DoubleFactory1D.dense.make(E*S);
+			for (int q = 0 ; q < E*S ; q ++) u_es.set(q , Math.max(0 , C - numLightpaths_es [q]));
+			res.add(u_es);
+			return res;
+		}
+		final MCFSpectrumOccupancy occupancy = fixedLightpaths.getSpectrumOccupancy(E , C , S);
+		for (int c = 0 ; c < C ; c ++)
+		{
+			DoubleMatrix1D u_es = DoubleFactory1D.dense.make(E*S);
+			for (int e = 0 ; e < E ; e ++)
+				for (int s = 0 ; s < S ; s ++)
+					if (!occupancy.isOccupied(e , c , s)) u_es.set(e*S + s , 1);
+			res.add(u_es);
+		}
+		return res;
+	}
+
+	/* Number of new lightpaths allowed in each link and slot (e S + s), given a solution (one matrix x_ps, or one per core): C minus its lightpaths 
+	 * in the slot, or per core, 1 if the slot is not used by its lightpaths in the core */
+	private static List<DoubleMatrix1D> getResidualCapacity (MCFCandidateLightpaths candidates , List<DoubleMatrix2D> x_psc , boolean oneVectorPerCore , int E , int C , int S)
+	{
+		List<DoubleMatrix1D> res = new ArrayList<DoubleMatrix1D> ();
+		IntArrayList rows = new IntArrayList (); IntArrayList columns = new IntArrayList (); DoubleArrayList vals = new DoubleArrayList ();
+		for (DoubleMatrix2D x_ps : x_psc)
+		{
+			DoubleMatrix1D u_es = DoubleFactory1D.dense.make(E*S , oneVectorPerCore? 1 : C);
+			x_ps.getNonZeros(rows , columns , vals);
+			for (int cont = 0 ; cont < rows.size() ; cont ++)
+				for (Link e : candidates.seqLinks_p.get(rows.get(cont)))
+					for (int s = columns.get(cont) ; s < columns.get(cont) + candidates.numSlots_p.get(rows.get(cont)) ; s ++)
+						u_es.set(e.getIndex()*S + s , Math.max(0 , u_es.get(e.getIndex()*S + s) - Math.round(vals.get(cont))));
+			res.add(u_es);
+		}
+		return res;
+	}
+
+	/* Sets as not feasible the initial slots of the candidates that, in every core, would use a slot with no residual capacity */
+	private void removeOccupiedInitialSlots (double [][] feasibleAssignment_ps , MCFCandidateLightpaths candidates , int S)
+	{
+		for (int p = 0 ; p < candidates.getNumberOfCandidates() ; p ++)
+			for (int s = 0 ; s < S ; s ++)
+			{
+				if (feasibleAssignment_ps [p][s] == 0) continue;
+				boolean fitsInSomeCore = false;
+				for (DoubleMatrix1D u_es : residualCapacity_c)
+				{
+					boolean fits = true;
+					for (Link e : candidates.seqLinks_p.get(p))
+					{
+						for (int s2 = s ; s2 < s + candidates.numSlots_p.get(p) && fits ; s2 ++)
+							if (u_es.get(e.getIndex()*S + s2) < 1) fits = false;
+						if (!fits) break;
+					}
+					if (fits) { fitsInSomeCore = true; break; }
+				}
+				if (!fitsInSomeCore) feasibleAssignment_ps [p][s] = 0;
+			}
+	}
+
+	/* Gives the initial lightpaths to the solver as initial values of the variables, in the shape of the constraint assembly. The lightpaths of a 
+	 * transponder type removed by the presolve are given to a dominating candidate in the same path and slots. The ones that are not candidates, 
+	 * or do not fit in the variable upper bounds, are not included. The numbers of both are appended to the model build report */
+	private void setInitialSolution (OptimizationProblem op , boolean tripletAssembly , boolean oneCopyPerCore , int maxLightpathsPerPathAndSlot , 
+			MCFCandidateLightpaths candidates , int C , int S , MCFLightpaths initialLightpaths)
+	{
+		final int P = candidates.getNumberOfCandidates();
+		final boolean [] isSearchLimitReached = new boolean [1];
+		if (oneCopyPerCore && !initialLightpaths.assignCoresIfMissing(C , maxCoreAssignmentSearchNodes.getInt() , isSearchLimitReached)) 
+		{
+			modelBuildReport.append(" - Initial solution not used : " + getCoreAssignmentFailure(isSearchLimitReached [0]));
+			return;
+		}
+		final int [] numReplacedAndDropped = new int [2];
+		final List<DoubleMatrix2D> x0_psc = initialLightpaths.getCandidateSlotMatrices(candidates , C , S , oneCopyPerCore , numReplacedAndDropped);
+		IntArrayList rows = new IntArrayList (); IntArrayList columns = new IntArrayList (); DoubleArrayList vals = new DoubleArrayList ();
+		for (int c = 0 ; c < x0_psc.size() ; c ++)
+		{
+			DoubleMatrixND x0 = tripletAssembly? new DoubleMatrixND (new int [] {1 , P*S}) : new DoubleMatrixND (new int [] {P , S});
+			x0_psc.get(c).getNonZeros(rows , columns , vals);
+			for (int cont = 0 ; cont < rows.size() ; cont ++)
+			{
+				final double value = Math.min(vals.get(cont) , maxLightpathsPerPathAndSlot);
+				numReplacedAndDropped [1] += (int) Math.round(vals.get(cont) - value);
+				if (tripletAssembly) x0.set(new int [] {0 , rows.get(cont)*S + columns.get(cont)} , value); else x0.set(new int [] {rows.get(cont) , columns.get(cont)} , value);
+			}
+			op.setInitialSolution(oneCopyPerCore? "x_ps"+Integer.toString(c) : "x_ps" , x0);
+		}
+		if (numReplacedAndDropped [0] == 0 && numReplacedAndDropped [1] == 0)
+			modelBuildReport.append(" - Initial solution in the model : all its " + initialLightpaths.getNumberOfLightpaths() + " lightpaths");
+		else
+			modelBuildReport.append(" - Initial solution changed in the model : " + numReplacedAndDropped [0] + " lightpaths given to a dominating transponder type, " + numReplacedAndDropped [1] + " not included (not candidates, or above the variable bounds)");
+	}
+
+	/* Builds the formulation with the given constraint assembly, and appends its building time and the bytes allocated by it to the model build report */
+	private OptimizationProblem createFormulationAndReport (boolean tripletAssembly , boolean oneCopyPerCore , int maxLightpathsPerPathAndSlot , NetPlan netPlan , WDMUtils.TransponderTypesInfo tpInfo , 
+			MCFCandidateLightpaths candidates , double [][] feasibleAssignment_ps , int C , int S)
+	{
+		final long initAllocatedBytes = MCFUtils.getCurrentThreadAllocatedBytes();
+		final long initTime = System.nanoTime();
+		OptimizationProblem op = tripletAssembly? 
+				createFormulationFromTriplets(oneCopyPerCore , maxLightpathsPerPathAndSlot , netPlan , candidates , feasibleAssignment_ps , C , S) : 
+				createFormulationFromMatrixExpressions(oneCopyPerCore , maxLightpathsPerPathAndSlot , netPlan , tpInfo , candidates , feasibleAssignment_ps , C , S);
+		final double buildTimeInSeconds = (System.nanoTime() - initTime) / 1e9;
+		final long allocatedBytes = initAllocatedBytes < 0? -1 : MCFUtils.getCurrentThreadAllocatedBytes() - initAllocatedBytes;
+		modelBuildReport.append(" - Model build (" + (tripletAssembly? "triplets" : "legacy") + ") : " + buildTimeInSeconds + " s, allocated " + (allocatedBytes < 0? -1 : allocatedBytes / (1024 * 1024)) + " MB");
+		return op;
+	}
+
+	/* Formulation with one row vector of variables per core (element q = p S + s for candidate p and initial slot s). The demand and slot clashing 
+	 * constraints are sparse matrices built directly from the candidates, and the same matrices are used for all the cores */
+	OptimizationProblem createFormulationFromTriplets (boolean oneCopyPerCore , int maxLightpathsPerPathAndSlot , NetPlan netPlan , 
+			MCFCandidateLightpaths candidates , double [][] feasibleAssignment_ps , int C , int S)
+	{
+		final int P = candidates.getNumberOfCandidates();
+		final int D = netPlan.getNumberOfDemands(candidates.getLayer());
+		final int E = netPlan.getNumberOfLinks(candidates.getLayer());
+		final boolean isNotCCC = !oneCopyPerCore;
+		final int maxLightpaths = isNotCCC? maxLightpathsPerPathAndSlot : 1;
+
+		/* Create the optimization problem object (JOM library) */
+		OptimizationProblem op = new OptimizationProblem();
+
+		/* Add the decision variables to the problem */
+		for (int c = 0 ; c < (isNotCCC? 1 : C); c++)
+		{
+			final double [][] maxAssignment_ps = getUpperBounds(feasibleAssignment_ps , maxLightpaths , isNotCCC? -1 : c);
+			double [][] maxAssignment_q = new double [1][P*S];
+			for (int p = 0; p < P; p++)
+				System.arraycopy(maxAssignment_ps [p] , 0 , maxAssignment_q [0] , p*S , S);
+			op.addDecisionVariable(isNotCCC? "x_ps" : "x_ps"+Integer.toString(c), !isRelaxed(), new int[] {1, P*S}, new DoubleMatrixND (new int [] {1,P*S}) , new DoubleMatrixND (maxAssignment_q));
+		}
+
+		// Set input Parameters
+		op.setInputParameter("C", C);
+		op.setInputParameter("h_d", getTrafficToCarry(netPlan , candidates.getLayer()), "row");
+		op.setInputParameter("c_q", candidates.getVectorCandidateSlotCost(S), "row");
+		op.setInputParameter("A_dq", candidates.getMatrixDemand2CandidateSlot(D , S)); /* line rate of candidate p, if it carries traffic of demand d */
+		op.setInputParameter("A_esq", candidates.getMatrixLinkSlot2CandidateSlot(E , S)); /* 1 if candidate p with initial slot s occupies slot s2 of link e (row e S + s2) */
+
+		String objectiveFunction = "";
+		String demandConstraint = "";
+		for (int c = 0 ; c < (isNotCCC? 1 : C); c++)
+		{
+			final String name = isNotCCC? "x_ps" : "x_ps"+Integer.toString(c);
+			objectiveFunction += (c == 0? "" : " + ") + "c_q * " + name + "'";
+			demandConstraint += (c == 0? "" : " + ") + "A_dq * " + name + "'";
+		}
+		op.setObjectiveFunction("minimize", objectiveFunction);
+		op.addConstraint(demandConstraint + " >= h_d'");
+
+		/* Frequency-slot clashing: up to C lightpaths per link and slot, or one per core (in incremental mode, the ones not used by the fixed lightpaths) */
+		if (residualCapacity_c != null)
+			for (int c = 0 ; c < residualCapacity_c.size() ; c++)
+				op.setInputParameter("u_es" + (isNotCCC? "" : Integer.toString(c)), residualCapacity_c.get(c), "row");
+		if (isNotCCC)
+			op.addConstraint("A_esq * x_ps' <= " + (residualCapacity_c != null? "u_es'" : "C"));
+		else
+			for (int c = 0 ; c < C ; c++)
+				op.addConstraint("A_esq * x_ps" + Integer.toString(c) + "' <= " + (residualCapacity_c != null? "u_es" + Integer.toString(c) + "'" : "1"));
+		return op;
+	}
+
+	/* The traffic the formulation must carry: the one to provision in incremental mode (and in the sub-problems), or the offered traffic */
+	private DoubleMatrix1D getTrafficToCarry (NetPlan netPlan , NetworkLayer layer)
+	{
+		return trafficToCarry_d != null? trafficToCarry_d : netPlan.getVectorDemandOfferedTraffic(layer);
+	}
+
+	/* Formulation with one matrix of variables x_ps per core, and the slot clashing constraints written as products of matrices, per transponder type */
+	OptimizationProblem createFormulationFromMatrixExpressions (boolean oneCopyPerCore , int maxLightpathsPerPathAndSlot , NetPlan netPlan , WDMUtils.TransponderTypesInfo tpInfo , 
+			MCFCandidateLightpaths candidates , double [][] feasibleAssignment_ps , int C , int S)
+	{
+		final int P = candidates.getNumberOfCandidates();
+		final int T = tpInfo.getNumTypes();
+		final boolean isNotCCC = !oneCopyPerCore;
+		if (residualCapacity_c != null) throw new Net2PlanException ("The legacy constraint assembly does not support the capacity left by fixed lightpaths (incremental mode, decomposition repair): use the triplets assembly");
+		final List<Integer> transponderType_p = candidates.transponderType_p;
+		final DoubleMatrix2D A_dp = candidates.getMatrixDemand2Candidate(netPlan.getNumberOfDemands(candidates.getLayer()));
+		final DoubleMatrix2D A_ep = candidates.getMatrixLink2Candidate(netPlan.getNumberOfLinks(candidates.getLayer()));
 		
 		/* Create the optimization problem object (JOM library) */
 		OptimizationProblem op = new OptimizationProblem();
 
 		/* Add the decision variables to the problem */
 		if (isNotCCC)
-			op.addDecisionVariable("x_ps", true, new int[] {P, S}, new DoubleMatrixND (new int [] {P,S}) , new DoubleMatrixND (feasibleAssignment_ps)); /* 1 if lightpath d(p) is routed through path p in wavelength w */
+			op.addDecisionVariable("x_ps", !isRelaxed(), new int[] {P, S}, new DoubleMatrixND (new int [] {P,S}) , new DoubleMatrixND (getUpperBounds(feasibleAssignment_ps , maxLightpathsPerPathAndSlot , -1))); /* 1 if lightpath d(p) is routed through path p in wavelength w */
 		else		
 			for (int c = 0 ; c < C; c++)			
-				op.addDecisionVariable("x_ps"+Integer.toString(c), true, new int[] {P, S}, new DoubleMatrixND (new int [] {P,S}) , new DoubleMatrixND (feasibleAssignment_ps));
+				op.addDecisionVariable("x_ps"+Integer.toString(c), !isRelaxed(), new int[] {P, S}, new DoubleMatrixND (new int [] {P,S}) , new DoubleMatrixND (getUpperBounds(feasibleAssignment_ps , 1 , c)));
 				
 		// Set input Parameters		
 		op.setInputParameter("S", S);
 		op.setInputParameter("C", C);
-		op.setInputParameter("h_d", netPlan.getVectorDemandOfferedTraffic(), "row");
-		op.setInputParameter("rate_p", lineRate_p , "row");
-		op.setInputParameter("c_p", cost_p , "row");
+		op.setInputParameter("h_d", getTrafficToCarry(netPlan , candidates.getLayer()), "row");
+		op.setInputParameter("rate_p", candidates.lineRate_p , "row");
+		op.setInputParameter("c_p", candidates.cost_p , "row");
 		op.setInputParameter("A_dp", A_dp);
 		op.setInputParameter("A_ep", A_ep); //Equal to route and segment indexes
 		
@@ -238,125 +980,50 @@ public class MCF_ILP_UPC_UPCT_Coop implements IAlgorithm
 				op.addConstraint(constraintString + " <= 1"); /* wavelength-clashing constraints --> sum_{p in P_e, w} x_pw <= C, for all e,w */	
 			}
 		}
+		return op;
+	}
+	
+	/* Splits the aggregated solution n_ps (number of cores used by path p with initial slot s) into one matrix per core. Returns null if 
+	 * no core assignment exists, or if it could not be found within the maximum number of search nodes (then isSearchLimitReached[0] is true) */
+	private List<DoubleMatrix2D> assignFiberCores (DoubleMatrix2D n_ps , List<List<Link>> seqLinks_p , List<Integer> numSlots_p , int C , boolean [] isSearchLimitReached)
+	{
+		final int P = n_ps.rows();
+		final int S = n_ps.columns();
+		List<List<Link>> seqLinks_l = new ArrayList<List<Link>> ();
+		IntArrayList path_l = new IntArrayList ();
+		IntArrayList initialSlot_l = new IntArrayList ();
+		IntArrayList numSlots_l = new IntArrayList ();
 		
-		op.solve(solverName.getString(), "solverLibraryName", solverLibraryName.getString() , "maxSolverTimeInSeconds" , maxSolverTimeInSeconds.getDouble());
-
-		/* If a feasible solution was not found, quit (this may also happen if after the maximum solver time no feasible solution is found) */
-		if (!op.solutionIsFeasible()) throw new Net2PlanException("A feasible solution was not found");
-
-		/* Retrieve the optimum solutions */
-		DoubleMatrix2D x_ps = DoubleFactory2D.sparse.make(P,S);
-		List<DoubleMatrix2D> x_psc = new ArrayList<DoubleMatrix2D>();
-		
-		if(isNotCCC) x_ps = op.getPrimalSolution("x_ps").view2D();
-		else
-		{			
-			for (int c = 0; c < C; c++)
-			{
-				String name = "x_ps"+Integer.toString(c);
-				x_psc.add(op.getPrimalSolution(name).view2D());
-			}				
-		}
-		
-		/* Create the lightpaths according to the solutions given */
-		WDMUtils.setFibersNumFrequencySlots(netPlan , numFrequencySlotsPerCore.getInt() , wdmLayer);
-		IntArrayList slots = new IntArrayList (); DoubleArrayList vals = new DoubleArrayList ();
-		
-		for (int p = 0; p < P ; p ++)
+		IntArrayList ps_rows = new IntArrayList (); IntArrayList ps_columns = new IntArrayList (); DoubleArrayList ps_vals = new DoubleArrayList ();
+		n_ps.getNonZeros(ps_rows , ps_columns , ps_vals);
+		for (int cont = 0 ; cont < ps_rows.size() ; cont ++)
 		{
-			if(isNotCCC)
+			final int p = ps_rows.get(cont);
+			final long numLightpaths = Math.round(ps_vals.get(cont));
+			for (int n = 0 ; n < numLightpaths ; n ++)
 			{
-				slots.clear(); vals.clear();
-				x_ps.viewRow(p).getNonZeros(slots , vals);
-				
-				if (slots.size() == 0) continue;
-				for (int cont = 0 ; cont < slots.size() ; cont ++)
-				{
-					final int s = slots.get (cont);
-					WDMUtils.addLightpath(demand_p.get(p) , new WDMUtils.RSA(seqLinks_p.get(p) , s , numSlots_p.get(p)), lineRate_p.get(p));			
-				}
-			}
-			else
-			{
-				for (int c = 0; c < C; c++)
-				{
-					slots.clear(); vals.clear();
-					x_psc.get(c).viewRow(p).getNonZeros(slots , vals);
-					
-					if (slots.size() == 0) continue;
-					for (int cont = 0 ; cont < slots.size() ; cont ++)
-					{
-						final int s = slots.get (cont);
-						Route r = WDMUtils.addLightpath(demand_p.get(p) , new WDMUtils.RSA(seqLinks_p.get(p) , s , numSlots_p.get(p)), lineRate_p.get(p));		
-						r.setAttribute("fiberCoreID", Integer.toString(c));
-					}					
-				}
-				for (Demand d : netPlan.getDemands())
-				{
-					String coreIDs = "";
-					for (Route r : d.getRoutes())					
-						coreIDs += r.getAttribute("fiberCoreID") + " ";
-					d.setAttribute("fiberCoreIDs", coreIDs);					
-				}
-			}			
-		}	
-		
-		// Check Spectrum Clashing
-		if (isNotCCC)
-			if (C == 1)	WDMUtils.checkResourceAllocationClashing(netPlan,false,false,wdmLayer);
-		else if (ilpType.getString().equalsIgnoreCase("core-continuity-constraint"))
-			MCFUtils.checkResourceAllocationClashingPerCore(netPlan, C);		
-		
-		// Store results		
-		final double throughput = netPlan.getDemandTotalCarriedTraffic();
-		final double totalFSOccupied = netPlan.getVectorLinkTotalOccupiedCapacity().zSum();
-		final double alpha = trafficFactor.getDouble();
-		final double totalOfferedTraffic = netPlan.getDemandTotalOfferedTraffic();
-		
-		File file = new File(netPlan.getNetworkName()+ilpType.getString()+".txt");
-		if (!file.exists()){
-			try {
-				file.createNewFile();
-			} catch (IOException e) {
-				e.printStackTrace();
+				seqLinks_l.add(seqLinks_p.get(p));
+				path_l.add(p);
+				initialSlot_l.add(ps_columns.get(cont));
+				numSlots_l.add(numSlots_p.get(p));
 			}
 		}
-		try {
-			FileWriter fw = new FileWriter(file,true);
-			fw.write(Integer.toString(C) + " " + throughput + " " + totalFSOccupied+ " " + totalOfferedTraffic + " " + alpha + "\r\n");
-			fw.close();			
-		} catch (IOException e) {
-			e.printStackTrace();
-		}			
-		
-		return "Offered Traffic: " + netPlan.getDemandTotalOfferedTraffic() +" - Throughut (Gbps): " + throughput + " - Total FSOccupied : " + totalFSOccupied + " - Alpha : " + trafficFactor.getDouble(); // this is the message that will be shown in the screen at the end of the algorithm
-	}
-
-	/** Returns a description message that will be shown in the graphical user interface
-	 */
-	@Override
-	public String getDescription()
-	{
-		return "Formulation-Based RSMA Algorithm availables : Non Core Continuity Constraint, Core Continuity Constraint";
-	}
 
-	
-	/** Returns the list of input parameters of the algorithm. For each parameter, you should return a Triple with its name, default value and a description
-	 * @return
-	 */
-	@Override
-	public List<Triple<String, String, String>> getParameters()	
-	{
-		return InputParameter.getInformationAllInputParameterFieldsOfObject(this);
+		initialSlot_l.trimToSize(); numSlots_l.trimToSize();
+		final int [] core_l = MCFUtils.assignFiberCores(seqLinks_l , initialSlot_l.elements() , numSlots_l.elements() , C , maxCoreAssignmentSearchNodes.getInt() , isSearchLimitReached);
+		if (core_l == null) return null;
+		
+		List<DoubleMatrix2D> x_psc = new ArrayList<DoubleMatrix2D>();
+		for (int c = 0; c < C; c++) x_psc.add(DoubleFactory2D.sparse.make(P,S));
+		for (int l = 0 ; l < core_l.length ; l ++)
+			x_psc.get(core_l [l]).set(path_l.get(l) , initialSlot_l.get(l) , 1.0);
+		return x_psc;
 	}
 
-	private static double getLengthInKm (Collection<Link> r) 
+	/* The reason why the lightpaths could not be assigned to the cores, for the reports */
+	private String getCoreAssignmentFailure (boolean isSearchLimitReached)
 	{
-		double res = 0;
-		for (Link e : r) 
-			res += e.getLengthInKm(); 
-		return res; 
+		return isSearchLimitReached? "core assignment not found within " + maxCoreAssignmentSearchNodes.getInt() + " search nodes (it may exist: try a higher maxCoreAssignmentSearchNodes)" : "no core assignment exists";
 	}
 
-	
 }
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.libraries.WDMUtils;
+import com.net2plan.utils.Triple;
+
+public class MCFCandidateCacheTest
+{
+	private final static String TRANSPONDERS = "40 2 2 1000 1; 100 3 3 300 1";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder ();
+
+	@Before
+	public void clearMemoryCache ()
+	{
+		MCFCandidateCache.clearMemoryCache();
+	}
+
+	@Test
+	public void candidatesRoundTripThroughTheCaches ()
+	{
+		final NetPlan netPlan = createDesign();
+		final File cacheFile = new File (folder.getRoot() , "net.mcfcache");
+		final Triple<Map<Demand,List<List<Link>>>,MCFCandidateLightpaths,String> computed = getCandidates(netPlan , cacheFile);
+		assertEquals("computed" , computed.getThird());
+		assertEquals("memory cache" , getCandidates(netPlan , cacheFile).getThird());
+
+		/* From the file, in a copy of the design */
+		MCFCandidateCache.clearMemoryCache();
+		final NetPlan copy = netPlan.copy();
+		final Triple<Map<Demand,List<List<Link>>>,MCFCandidateLightpaths,String> cached = getCandidates(copy , cacheFile);
+		assertEquals("file cache" , cached.getThird());
+		final MCFCandidateLightpaths candidates = computed.getSecond() , cachedCandidates = cached.getSecond();
+		assertEquals(candidates.getNumberOfCandidates() , cachedCandidates.getNumberOfCandidates());
+		for (int p = 0 ; p < candidates.getNumberOfCandidates() ; p ++)
+		{
+			assertEquals(candidates.demand_p.get(p).getIndex() , cachedCandidates.demand_p.get(p).getIndex());
+			assertEquals(candidates.transponderType_p.get(p) , cachedCandidates.transponderType_p.get(p));
+			assertEquals(candidates.seqLinks_p.get(p).size() , cachedCandidates.seqLinks_p.get(p).size());
+			for (int cont = 0 ; cont < candidates.seqLinks_p.get(p).size() ; cont ++)
+			{
+				final Link e = cachedCandidates.seqLinks_p.get(p).get(cont);
+				assertEquals(candidates.seqLinks_p.get(p).get(cont).getIndex() , e.getIndex());
+				assertTrue(e == copy.getLink(e.getIndex()));
+			}
+		}
+		for (Demand d : copy.getDemands()) assertEquals(computed.getFirst().get(netPlan.getDemand(d.getIndex())).size() , cached.getFirst().get(d).size());
+	}
+
+	@Test
+	public void corruptedFileIsDiscarded () throws Exception
+	{
+		final NetPlan netPlan = createDesign();
+		final File cacheFile = new File (folder.getRoot() , "net.mcfcache");
+		final int numCandidates = getCandidates(netPlan , cacheFile).getSecond().getNumberOfCandidates();
+		final File [] entryFiles = folder.getRoot().listFiles();
+		assertEquals(1 , entryFiles.length);
+		RandomAccessFile file = new RandomAccessFile (entryFiles [0] , "rw");
+		try { file.setLength(file.length() - 4); } finally { file.close(); }
+
+		MCFCandidateCache.clearMemoryCache();
+		final Triple<Map<Demand,List<List<Link>>>,MCFCandidateLightpaths,String> res = getCandidates(netPlan , cacheFile);
+		assertEquals("computed" , res.getThird());
+		assertEquals(numCandidates , res.getSecond().getNumberOfCandidates());
+	}
+
+	/* A line of 4 nodes with links of 200 km, and demands between all the node pairs */
+	private static NetPlan createDesign ()
+	{
+		final NetPlan netPlan = MCFTestDesigns.createLine(4 , 200 , 20);
+		for (int n1 = 0 ; n1 < 4 ; n1 ++)
+			for (int n2 = 0 ; n2 < 4 ; n2 ++)
+				if (n1 != n2) netPlan.addDemand(netPlan.getNode(n1) , netPlan.getNode(n2) , 40 , null);
+		return netPlan;
+	}
+
+	private static Triple<Map<Demand,List<List<Link>>>,MCFCandidateLightpaths,String> getCandidates (NetPlan netPlan , File cacheFile)
+	{
+		return MCFCandidateCache.getCandidates(netPlan , netPlan.getNetworkLayerDefault() , 2 , -1 , new WDMUtils.TransponderTypesInfo (TRANSPONDERS) , TRANSPONDERS , cacheFile);
+	}
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.matrix.tdouble.DoubleFactory1D;
+
+public class MCFDecompositionTest
+{
+	@Test
+	public void spectrumFreeBoundIsTheCheapestCombination ()
+	{
+		/* 140 Gbps: 100 + 40 costs 5, less than 2 x 100 (6) or 4 x 40 (8) */
+		final int [] numPerGbpsDemands = new int [] { -1 };
+		assertEquals(5 , MCFDecomposition.getSpectrumFreeLowerBound(createCandidates("40 2 2 1000 1; 100 3 3 1000 1") , DoubleFactory1D.dense.make(new double [] { 140 , 0 }) , numPerGbpsDemands) , 1e-9);
+		assertEquals(0 , numPerGbpsDemands [0]);
+		assertEquals("exact knapsack" , MCFDecomposition.getSpectrumFreeLowerBoundType(numPerGbpsDemands [0]));
+	}
+
+	@Test
+	public void spectrumFreeBoundFallsBackToTheCostPerGbps ()
+	{
+		/* Non-integer line rate: 100 Gbps at 2 / 40.5 per Gbps */
+		final int [] numPerGbpsDemands = new int [1];
+		assertEquals(100 * 2 / 40.5 , MCFDecomposition.getSpectrumFreeLowerBound(createCandidates("40.5 2 2 1000 1") , DoubleFactory1D.dense.make(new double [] { 100 , 0 }) , numPerGbpsDemands) , 1e-9);
+		assertEquals(1 , numPerGbpsDemands [0]);
+		assertEquals("knapsack with per-Gbps fallback in 1 demands" , MCFDecomposition.getSpectrumFreeLowerBoundType(numPerGbpsDemands [0]));
+	}
+
+	/* The candidates of all the types, in one link, for two demands */
+	private static MCFCandidateLightpaths createCandidates (String transponderTypesInfo)
+	{
+		final WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo (transponderTypesInfo);
+		final NetPlan netPlan = MCFTestDesigns.createLine(2 , 100 , 320);
+		final Demand d0 = netPlan.addDemand(netPlan.getNode(0) , netPlan.getNode(1) , 0 , null);
+		final Demand d1 = netPlan.addDemand(netPlan.getNode(1) , netPlan.getNode(0) , 0 , null);
+		final MCFCandidateLightpaths candidates = new MCFCandidateLightpaths (netPlan.getNetworkLayerDefault() , 2 * tpInfo.getNumTypes());
+		for (int t = 0 ; t < tpInfo.getNumTypes() ; t ++) candidates.add(d0 , MCFTestDesigns.path(netPlan.getLink(0)) , t , tpInfo);
+		for (int t = 0 ; t < tpInfo.getNumTypes() ; t ++) candidates.add(d1 , MCFTestDesigns.path(netPlan.getLink(1)) , t , tpInfo);
+		return candidates;
+	}
+}
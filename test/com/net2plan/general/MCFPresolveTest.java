@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.matrix.tdouble.DoubleFactory1D;
+
+public class MCFPresolveTest
+{
+	/* Type 1 has the rate of type 0, with a higher cost and more slots: it is dominated. Type 2 carries more traffic */
+	private final static String TRANSPONDERS = "40 2 2 1000 1; 40 3 3 1000 1; 100 3 3 1000 1";
+
+	@Test
+	public void removesDominatedCandidatesAndDemandsWithoutTraffic ()
+	{
+		final WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo (TRANSPONDERS);
+		final MCFCandidateLightpaths candidates = createCandidates(tpInfo);
+		final MCFPresolve presolve = MCFPresolve.apply(candidates , tpInfo , DoubleFactory1D.dense.make(new double [] { 100 , 0 }) , null , 320 , false);
+		final MCFCandidateLightpaths res = presolve.getCandidates();
+		assertEquals(2 , res.getNumberOfCandidates());
+		assertEquals(0 , (int) res.transponderType_p.get(0));
+		assertEquals(2 , (int) res.transponderType_p.get(1));
+		assertEquals(0 , res.demand_p.get(0).getIndex());
+		assertEquals(0 , res.demand_p.get(1).getIndex());
+		assertEquals(320 , presolve.getNumberOfSlots());
+		assertTrue(presolve.getReport(1 , 2 , 2).contains("1 dominated candidates, 3 candidates of demands without traffic"));
+	}
+
+	/* Type 1 is the only one feasible in core 1 */
+	@Test
+	public void keepsCandidatesFeasibleInMoreCores ()
+	{
+		final WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo (TRANSPONDERS);
+		final MCFCandidateLightpaths candidates = createCandidates(tpInfo);
+		final boolean [][] feasibleCore_pc = new boolean [candidates.getNumberOfCandidates()][];
+		for (int p = 0 ; p < feasibleCore_pc.length ; p ++) feasibleCore_pc [p] = new boolean [] { true , p == 1 };
+		final MCFPresolve presolve = MCFPresolve.apply(candidates , tpInfo , DoubleFactory1D.dense.make(new double [] { 100 , 0 }) , feasibleCore_pc , 320 , false);
+		assertEquals(3 , presolve.getCandidates().getNumberOfCandidates());
+		assertEquals(3 , presolve.getFeasibleCores().length);
+	}
+
+	@Test
+	public void boundsTheSpectrum ()
+	{
+		final WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo (TRANSPONDERS);
+		final MCFPresolve presolve = MCFPresolve.apply(createCandidates(tpInfo) , tpInfo , DoubleFactory1D.dense.make(new double [] { 100 , 0 }) , null , 320 , true);
+
+		/* At most ceil((100 + 100) / 40) - 1 = 4 lightpaths of up to 3 slots in the link: a lightpath of 3 slots starts at most at 4 (3 - 1) + 4 x 3 = 20 */
+		assertEquals(23 , presolve.getNumberOfSlots());
+		final double [][] feasibleAssignment_ps = presolve.getFeasibleInitialSlots();
+		assertEquals(1 , feasibleAssignment_ps [1][20] , 0);
+		assertEquals(0 , feasibleAssignment_ps [1][21] , 0);
+	}
+
+	/* The candidates of all the types, in one link, of a demand with traffic and one without */
+	private static MCFCandidateLightpaths createCandidates (WDMUtils.TransponderTypesInfo tpInfo)
+	{
+		final NetPlan netPlan = MCFTestDesigns.createLine(2 , 100 , 320);
+		final Demand d0 = netPlan.addDemand(netPlan.getNode(0) , netPlan.getNode(1) , 100 , null);
+		final Demand d1 = netPlan.addDemand(netPlan.getNode(1) , netPlan.getNode(0) , 0 , null);
+		final MCFCandidateLightpaths candidates = new MCFCandidateLightpaths (netPlan.getNetworkLayerDefault() , 6);
+		for (int t = 0 ; t < tpInfo.getNumTypes() ; t ++) candidates.add(d0 , MCFTestDesigns.path(netPlan.getLink(0)) , t , tpInfo);
+		for (int t = 0 ; t < tpInfo.getNumTypes() ; t ++) candidates.add(d1 , MCFTestDesigns.path(netPlan.getLink(1)) , t , tpInfo);
+		return candidates;
+	}
+}
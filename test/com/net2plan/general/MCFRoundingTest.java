@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.libraries.WDMUtils;
+
+import cern.colt.matrix.tdouble.DoubleFactory1D;
+import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+public class MCFRoundingTest
+{
+	private final static int S = 10;
+
+	@Test
+	public void roundingIsFeasibleAndCarriesTheTraffic ()
+	{
+		final WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo ("40 2 2 1000 1; 100 3 3 1000 1");
+		final NetPlan netPlan = MCFTestDesigns.createLine(2 , 100 , S);
+		final Demand d0 = netPlan.addDemand(netPlan.getNode(0) , netPlan.getNode(1) , 80 , null);
+		final Demand d1 = netPlan.addDemand(netPlan.getNode(0) , netPlan.getNode(1) , 40 , null);
+		final MCFCandidateLightpaths candidates = new MCFCandidateLightpaths (netPlan.getNetworkLayerDefault() , 4);
+		for (Demand d : Arrays.asList(d0 , d1))
+			for (int t = 0 ; t < tpInfo.getNumTypes() ; t ++) candidates.add(d , MCFTestDesigns.path(netPlan.getLink(0)) , t , tpInfo);
+		final DoubleMatrix1D h_d = DoubleFactory1D.dense.make(new double [] { 80 , 40 });
+
+		/* A fractional solution whose lightpaths clash in slot 0, and do not carry all the traffic of d0 */
+		final DoubleMatrix2D relaxed_ps = DoubleFactory2D.sparse.make(4 , S);
+		relaxed_ps.set(0 , 0 , 0.5);
+		relaxed_ps.set(1 , 0 , 0.5);
+		relaxed_ps.set(2 , 0 , 0.7);
+		final MCFRounding rounding = MCFRounding.round(candidates , Arrays.asList(relaxed_ps) , 1 , 1 , 1 , h_d , null , null , 8 , 1 , 2);
+		final List<DoubleMatrix2D> x_ps = rounding.getSolution();
+		assertNotNull(x_ps);
+		assertEquals(8 , rounding.getNumberOfFeasiblePasses());
+
+		final double [] carried_d = new double [2];
+		final int [] occupation_s = new int [S];
+		double cost = 0;
+		for (int p = 0 ; p < 4 ; p ++)
+			for (int s = 0 ; s < S ; s ++)
+			{
+				final int number = (int) x_ps.get(0).get(p , s);
+				if (number == 0) continue;
+				assertTrue(s + candidates.numSlots_p.get(p) <= S);
+				carried_d [candidates.demand_p.get(p).getIndex()] += number * candidates.lineRate_p.get(p);
+				cost += number * candidates.cost_p.get(p);
+				for (int s2 = s ; s2 < s + candidates.numSlots_p.get(p) ; s2 ++) occupation_s [s2] += number;
+			}
+		for (int s = 0 ; s < S ; s ++) assertTrue(occupation_s [s] <= 1);
+		assertTrue(carried_d [0] >= 80);
+		assertTrue(carried_d [1] >= 40);
+		assertEquals(cost , rounding.getCost() , 1e-9);
+	}
+
+	@Test
+	public void roundingWithoutSpectrumFindsNoSolution ()
+	{
+		final WDMUtils.TransponderTypesInfo tpInfo = new WDMUtils.TransponderTypesInfo ("40 2 2 1000 1");
+		final NetPlan netPlan = MCFTestDesigns.createLine(2 , 100 , 3);
+		final Demand d = netPlan.addDemand(netPlan.getNode(0) , netPlan.getNode(1) , 80 , null);
+		final MCFCandidateLightpaths candidates = new MCFCandidateLightpaths (netPlan.getNetworkLayerDefault() , 1);
+		candidates.add(d , MCFTestDesigns.path(netPlan.getLink(0)) , 0 , tpInfo);
+
+		/* Two lightpaths of 2 slots do not fit in 3 slots */
+		final DoubleMatrix2D relaxed_ps = DoubleFactory2D.sparse.make(1 , 3);
+		relaxed_ps.set(0 , 0 , 1);
+		final MCFRounding rounding = MCFRounding.round(candidates , Arrays.asList(relaxed_ps) , 1 , 1 , 1 , DoubleFactory1D.dense.make(new double [] { 80 }) , null , null , 4 , 1 , 1);
+		assertEquals(null , rounding.getSolution());
+		assertEquals(0 , rounding.getNumberOfFeasiblePasses());
+	}
+}
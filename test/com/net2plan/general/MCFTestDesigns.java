@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.interfaces.networkDesign.Route;
+import com.net2plan.libraries.WDMUtils;
+
+/** Small designs for the tests */
+class MCFTestDesigns
+{
+	final static double PROPAGATION_SPEED_KM_PER_SECOND = 200000;
+
+	/** Creates a line of N nodes, with the links n -> n+1 (index 2n) and n+1 -> n (index 2n+1), of the given length and S slots */
+	static NetPlan createLine (int N , double linkLengthInKm , int S)
+	{
+		NetPlan netPlan = new NetPlan ();
+		for (int n = 0 ; n < N ; n ++) netPlan.addNode(100 * n , 0 , "Node" + n , null);
+		for (int n = 0 ; n + 1 < N ; n ++)
+		{
+			netPlan.addLink(netPlan.getNode(n) , netPlan.getNode(n + 1) , S , linkLengthInKm , PROPAGATION_SPEED_KM_PER_SECOND , null);
+			netPlan.addLink(netPlan.getNode(n + 1) , netPlan.getNode(n) , S , linkLengthInKm , PROPAGATION_SPEED_KM_PER_SECOND , null);
+		}
+		return netPlan;
+	}
+
+	/** Adds a link of the given length and S slots */
+	static Link addLink (NetPlan netPlan , Node originNode , Node destinationNode , double lengthInKm , int S)
+	{
+		return netPlan.addLink(originNode , destinationNode , S , lengthInKm , PROPAGATION_SPEED_KM_PER_SECOND , null);
+	}
+
+	/** Adds a lightpath of the demand in the given links, slots and core */
+	static Route addLightpath (Demand d , List<Link> seqLinks , int initialSlot , int numSlots , int core)
+	{
+		Route r = WDMUtils.addLightpath(d , new WDMUtils.RSA (seqLinks , initialSlot , numSlots) , 40);
+		r.setAttribute("fiberCoreID" , "" + core);
+		return r;
+	}
+
+	static List<Link> path (Link ... links)
+	{
+		return Arrays.asList(links);
+	}
+}
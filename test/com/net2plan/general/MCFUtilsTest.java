@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Francisco Javier Moreno Muro
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v3.0
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * Contributors:
+ *     Francisco Javier Moreno Muro
+ ******************************************************************************/
+
+package com.net2plan.general;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.Route;
+
+public class MCFUtilsTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder ();
+
+	@Test
+	public void assignFiberCoresSeparatesClashingLightpaths ()
+	{
+		final NetPlan netPlan = MCFTestDesigns.createLine(3 , 100 , 20);
+		final Link e0 = netPlan.getLink(0) , e2 = netPlan.getLink(2);
+		final List<List<Link>> seqLinks_l = Arrays.asList(MCFTestDesigns.path(e0) , MCFTestDesigns.path(e0 , e2) , MCFTestDesigns.path(e2) , MCFTestDesigns.path(e0));
+		final int [] initialSlot_l = { 0 , 1 , 0 , 10 };
+		final int [] numSlots_l = { 2 , 2 , 3 , 2 };
+		final boolean [] isSearchLimitReached = new boolean [] { true };
+		final int [] core_l = MCFUtils.assignFiberCores(seqLinks_l , initialSlot_l , numSlots_l , 2 , 1000 , isSearchLimitReached);
+		assertNotNull(core_l);
+		assertFalse(isSearchLimitReached [0]);
+		for (int l = 0 ; l < core_l.length ; l ++) assertTrue(core_l [l] >= 0 && core_l [l] < 2);
+		assertTrue(core_l [0] != core_l [1]);
+		assertTrue(core_l [1] != core_l [2]);
+	}
+
+	@Test
+	public void assignFiberCoresReturnsNullIfInfeasible ()
+	{
+		/* Three lightpaths clashing pairwise in different links (an odd cycle), never more than two in a link and slot */
+		final NetPlan netPlan = MCFTestDesigns.createLine(4 , 100 , 20);
+		final Link e0 = netPlan.getLink(0) , e2 = netPlan.getLink(2) , e4 = netPlan.getLink(4);
+		final List<List<Link>> seqLinks_l = Arrays.asList(MCFTestDesigns.path(e0 , e2) , MCFTestDesigns.path(e0 , e4) , MCFTestDesigns.path(e2 , e4));
+		final boolean [] isSearchLimitReached = new boolean [] { true };
+		assertNull(MCFUtils.assignFiberCores(seqLinks_l , new int [] { 0 , 1 , 1 } , new int [] { 2 , 2 , 2 } , 2 , 1000 , isSearchLimitReached));
+		assertFalse(isSearchLimitReached [0]);
+		assertNotNull(MCFUtils.assignFiberCores(seqLinks_l , new int [] { 0 , 1 , 1 } , new int [] { 2 , 2 , 2 } , 3 , 1000 , isSearchLimitReached));
+	}
+
+	@Test
+	public void assignFiberCoresReportsTheSearchLimit ()
+	{
+		final NetPlan netPlan = MCFTestDesigns.createLine(2 , 100 , 20);
+		final List<List<Link>> seqLinks_l = Arrays.asList(MCFTestDesigns.path(netPlan.getLink(0)) , MCFTestDesigns.path(netPlan.getLink(0)));
+		final boolean [] isSearchLimitReached = new boolean [1];
+		assertNull(MCFUtils.assignFiberCores(seqLinks_l , new int [] { 0 , 1 } , new int [] { 2 , 2 } , 2 , 1 , isSearchLimitReached));
+		assertTrue(isSearchLimitReached [0]);
+	}
+
+	@Test
+	public void kLooplessShortestPathsAreSortedByLength ()
+	{
+		final NetPlan netPlan = new NetPlan ();
+		for (int n = 0 ; n < 4 ; n ++) netPlan.addNode(0 , 0 , "Node" + n , null);
+		final Link e01 = MCFTestDesigns.addLink(netPlan , netPlan.getNode(0) , netPlan.getNode(1) , 1 , 10);
+		final Link e13 = MCFTestDesigns.addLink(netPlan , netPlan.getNode(1) , netPlan.getNode(3) , 1 , 10);
+		final Link e02 = MCFTestDesigns.addLink(netPlan , netPlan.getNode(0) , netPlan.getNode(2) , 2 , 10);
+		final Link e23 = MCFTestDesigns.addLink(netPlan , netPlan.getNode(2) , netPlan.getNode(3) , 2 , 10);
+		final Link e03 = MCFTestDesigns.addLink(netPlan , netPlan.getNode(0) , netPlan.getNode(3) , 5 , 10);
+		MCFTestDesigns.addLink(netPlan , netPlan.getNode(1) , netPlan.getNode(2) , 3 , 10); /* 0-1-2-3 is 6 km long */
+		final List<Link> links = netPlan.getLinks();
+
+		final List<List<Link>> paths = MCFUtils.getKLooplessShortestPaths(links , 4 , netPlan.getNode(0) , netPlan.getNode(3) , 3 , Double.MAX_VALUE , -1);
+		assertEquals(Arrays.asList(MCFTestDesigns.path(e01 , e13) , MCFTestDesigns.path(e02 , e23) , MCFTestDesigns.path(e03)) , paths);
+		assertEquals(1 , MCFUtils.getKLooplessShortestPaths(links , 4 , netPlan.getNode(0) , netPlan.getNode(3) , 1 , Double.MAX_VALUE , -1).size());
+		assertEquals(2 , MCFUtils.getKLooplessShortestPaths(links , 4 , netPlan.getNode(0) , netPlan.getNode(3) , 3 , 4 , -1).size());
+
+		/* 5 km take 0.025 ms */
+		assertEquals(Arrays.asList(MCFTestDesigns.path(e01 , e13) , MCFTestDesigns.path(e02 , e23)) , MCFUtils.getKLooplessShortestPaths(links , 4 , netPlan.getNode(0) , netPlan.getNode(3) , 3 , Double.MAX_VALUE , 0.021));
+	}
+
+	@Test
+	public void clashesPerCore ()
+	{
+		final NetPlan netPlan = MCFTestDesigns.createLine(2 , 100 , 10);
+		final Link e0 = netPlan.getLink(0);
+		final Demand d = netPlan.addDemand(netPlan.getNode(0) , netPlan.getNode(1) , 80 , null);
+		final Route r0 = MCFTestDesigns.addLightpath(d , MCFTestDesigns.path(e0) , 0 , 2 , 0);
+		final Route r1 = MCFTestDesigns.addLightpath(d , MCFTestDesigns.path(e0) , 1 , 2 , 1);
+		assertTrue(MCFUtils.getResourceAllocationClashesPerCore(netPlan , 2).isEmpty());
+		MCFUtils.checkResourceAllocationClashingPerCore(netPlan , 2);
+
+		r1.setAttribute("fiberCoreID" , "0");
+		List<MCFUtils.SlotClash> clashes = MCFUtils.getResourceAllocationClashesPerCore(netPlan , 2);
+		assertEquals(1 , clashes.size());
+		assertEquals(e0 , clashes.get(0).link);
+		assertEquals(0 , clashes.get(0).core);
+		assertEquals(1 , clashes.get(0).slot);
+		assertEquals(Arrays.asList(r0 , r1) , clashes.get(0).routes);
+		try { MCFUtils.checkResourceAllocationClashingPerCore(netPlan , 2); throw new AssertionError ("clash not detected"); }
+		catch (Net2PlanException e) { }
+	}
+
+	@Test
+	public void clashesOutOfTheFiberSpectrum ()
+	{
+		final NetPlan netPlan = MCFTestDesigns.createLine(2 , 100 , 10);
+		final Demand d = netPlan.addDemand(netPlan.getNode(0) , netPlan.getNode(1) , 40 , null);
+		final Route r = MCFTestDesigns.addLightpath(d , MCFTestDesigns.path(netPlan.getLink(0)) , 9 , 2 , 1);
+		List<MCFUtils.SlotClash> clashes = MCFUtils.getResourceAllocationClashesPerCore(netPlan , 2);
+		assertEquals(1 , clashes.size());
+		assertEquals(10 , clashes.get(0).slot);
+		assertEquals(Arrays.asList(r) , clashes.get(0).routes);
+	}
+
+	@Test(expected = Net2PlanException.class)
+	public void clashesRequireAValidCore ()
+	{
+		final NetPlan netPlan = MCFTestDesigns.createLine(2 , 100 , 10);
+		final Demand d = netPlan.addDemand(netPlan.getNode(0) , netPlan.getNode(1) , 40 , null);
+		MCFTestDesigns.addLightpath(d , MCFTestDesigns.path(netPlan.getLink(0)) , 0 , 2 , 2);
+		MCFUtils.getResourceAllocationClashesPerCore(netPlan , 2);
+	}
+
+	@Test
+	public void resultsFileHeaderIsWrittenWhenTheColumnsChange () throws Exception
+	{
+		final File file = new File (folder.getRoot() , "results.txt");
+		MCFUtils.appendToResultsFile(file , "a b" , "1 2");
+		MCFUtils.appendToResultsFile(file , "a b" , "3 4");
+		MCFUtils.appendToResultsFile(file , "a b c" , "5 6 7");
+		assertArrayEquals(new Object [] { "# a b" , "1 2" , "3 4" , "# a b c" , "5 6 7" } , Files.readAllLines(file.toPath() , StandardCharsets.UTF_8).toArray());
+	}
+}